@@ -0,0 +1,645 @@
+import java.util.*;
+
+import javax.naming.OperationNotSupportedException;
+
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// Binary search tree storing its nodes in parallel arrays instead of one
+// object per node. It is a separate class, not a drop-in replacement for
+// BinarySearchTree: it has the operations listed here and no others. In
+// particular it lacks rank and select, iteration, the NavigableSet views,
+// bulkLoad, snapshots, the set operations and splay mode.
+//  * Node i has its item in elements[i] and its children's indexes in
+//    left[i] and right[i], with NIL for a missing child.
+//  * Slots freed by remove are chained through left[] into a free list and
+//    reused by insert; makeEmpty releases every slot at once.
+//  * The only per-item heap objects are the items themselves.
+//
+// ******************************ADDITIONAL METHODS****************************
+// int nodeCount()  Returns the count of nodes in constant time.
+// boolean isFull()  Returns true if the tree is full binary tree.
+// boolean compareStructure(x)  Returns true if the tree structure matches x.
+// boolean isIdentical(x)  Returns true if the tree is identical x.
+// ArrayBinarySearchTree copy()  Creates a new copy of the tree.
+// ArrayBinarySearchTree mirror(x)  Creates and returns a mirror of the original tree.
+// boolean isMirror  Returns true if the tree is a mirror of the passed tree.
+// rotateRight(x)  Performs a single rotation on the node with value of x.
+// rotateLeft(x)  As above but left.
+// printLevels()  Performs a level-by-level printing of the tree.
+// ******************ERRORS****************************************************
+// Throws NoSuchElementException
+// Throws OperationNotSupportedException on manual rotations of an AVL tree,
+//   or of a node without the child it would rotate with
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class ArrayBinarySearchTree<AnyType extends Comparable<? super AnyType>> {
+    /**
+     * Construct the tree.
+     */
+    public ArrayBinarySearchTree() {
+        this(BinarySearchTree.Mode.UNBALANCED);
+    }
+
+    /**
+     * Construct the tree using the specified balancing strategy.
+     *
+     * @param mode the balancing strategy.
+     * @throws IllegalArgumentException if mode is SPLAY, which this tree does not implement.
+     */
+    public ArrayBinarySearchTree(BinarySearchTree.Mode mode) {
+        if (mode == BinarySearchTree.Mode.SPLAY)
+            throw new IllegalArgumentException("Splay mode is not supported");
+        this.mode = mode;
+        elements = new Object[INITIAL_CAPACITY];
+        left = new int[INITIAL_CAPACITY];
+        right = new int[INITIAL_CAPACITY];
+        height = new int[INITIAL_CAPACITY];
+        size = new int[INITIAL_CAPACITY];
+        path = new int[INITIAL_CAPACITY];
+        makeEmpty();
+    }
+
+    /**
+     * Count the number of nodes.
+     */
+    public int nodeCount() {
+        return size(root);
+    }
+
+    /**
+     * Returns true if the tree is full.
+     */
+    public boolean isFull() {
+        if (isEmpty())
+            throw new UnderflowException();
+        for (int i = 0; i < allocated; i++) // freed slots hold no item and are skipped
+            if (elements[i] != null && (left[i] == NIL) != (right[i] == NIL))
+                return false;
+        return true;
+    }
+
+    /**
+     * Determines if this tree's structure matches a specified tree's structure.
+     */
+    public boolean compareStructure(ArrayBinarySearchTree<AnyType> t) {
+        return compare(t, false, false);
+    }
+
+    /**
+     * Compares the current tree to another tree and returns true if they are identical.
+     */
+    public boolean isIdentical(ArrayBinarySearchTree<AnyType> x) {
+        return compare(x, true, false);
+    }
+
+    /**
+     * Returns true if the tree is a mirror of the specified tree.
+     */
+    public boolean isMirror(ArrayBinarySearchTree<AnyType> x) {
+        return compare(x, true, true);
+    }
+
+    /**
+     * Internal method that walks this tree and another side by side.
+     *
+     * @param x the other tree.
+     * @param items true to compare items as well as shape.
+     * @param mirrored true to pair each left child with the other tree's right child.
+     * @return true if the trees match.
+     */
+    private boolean compare(ArrayBinarySearchTree<AnyType> x, boolean items, boolean mirrored) {
+        if (root == NIL || x.root == NIL)
+            return root == x.root;
+        int[] xLeft = mirrored ? x.right : x.left;
+        int[] xRight = mirrored ? x.left : x.right;
+        int[] stack = new int[2 * (height(root) + 2)]; // pending pairs; depth-first keeps at most one pair per level
+        int top = 0;
+        stack[top++] = root;
+        stack[top++] = x.root;
+        while (top > 0) {
+            int r2 = stack[--top];
+            int r1 = stack[--top];
+            if (items && !elements[r1].equals(x.elements[r2]))
+                return false;
+            if ((left[r1] == NIL) != (xLeft[r2] == NIL) || (right[r1] == NIL) != (xRight[r2] == NIL))
+                return false;
+            if (top + 4 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            if (right[r1] != NIL) {
+                stack[top++] = right[r1];
+                stack[top++] = xRight[r2];
+            }
+            if (left[r1] != NIL) {
+                stack[top++] = left[r1];
+                stack[top++] = xLeft[r2];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates and returns a new tree that is a copy of the original tree.
+     * The node arrays are copied wholesale, so no comparisons are made.
+     */
+    public ArrayBinarySearchTree<AnyType> copy() {
+        ArrayBinarySearchTree<AnyType> x = new ArrayBinarySearchTree<>(mode);
+        x.elements = elements.clone();
+        x.left = left.clone();
+        x.right = right.clone();
+        x.height = height.clone();
+        x.size = size.clone();
+        x.root = root;
+        x.free = free;
+        x.allocated = allocated;
+        return x;
+    }
+
+    /**
+     * Creates and returns a new tree that is a mirror image of this tree.
+     */
+    public ArrayBinarySearchTree<AnyType> mirror() {
+        ArrayBinarySearchTree<AnyType> x = copy();
+        int[] lt = x.left;
+        x.left = x.right;
+        x.right = lt;
+        // the free list is chained through left[], so carry it over
+        for (int i = free; i != NIL; i = x.right[i])
+            x.left[i] = x.right[i];
+        return x;
+    }
+
+    /**
+     * Perform a single right rotation on the node with value of x.
+     * @throws OperationNotSupportedException
+     */
+    public void rotateRight(AnyType element) throws OperationNotSupportedException {
+        if (isEmpty())
+            throw new UnderflowException();
+        if (mode == BinarySearchTree.Mode.AVL)
+            throw new OperationNotSupportedException("Manual rotations are not supported on AVL trees.");
+        int parent = findParent(root, element);
+        if (parent == root && left[root] == NIL)
+            throw new OperationNotSupportedException("Only tree roots with left children can be rotated right.");
+        if (left[parent] == NIL)
+            throw new OperationNotSupportedException("Only left children can be rotated right.");
+        int grandparent = findParent(root, elementAt(parent));
+        if (parent == root) { // special case: pivot will become the tree's new root
+            root = rotateWithLeftChild(root);
+            return;
+        }
+        if (parent == left[grandparent])
+            left[grandparent] = rotateWithLeftChild(parent);
+        else
+            right[grandparent] = rotateWithLeftChild(parent);
+        updateHeights(grandparent);
+    }
+
+    /**
+     * Perform a single left rotation on the node with value of x.
+     * @throws OperationNotSupportedException
+     */
+    public void rotateLeft(AnyType element) throws OperationNotSupportedException {
+        if (isEmpty())
+            throw new UnderflowException();
+        if (mode == BinarySearchTree.Mode.AVL)
+            throw new OperationNotSupportedException("Manual rotations are not supported on AVL trees.");
+        int parent = findParent(root, element);
+        if (parent == root && right[root] == NIL)
+            throw new OperationNotSupportedException("Only tree roots with right children can be rotated left.");
+        if (right[parent] == NIL)
+            throw new OperationNotSupportedException("Only right children can be rotated left.");
+        int grandparent = findParent(root, elementAt(parent));
+        if (parent == root) { // special case: pivot will become the tree's new root
+            root = rotateWithRightChild(root);
+            return;
+        }
+        if (parent == left[grandparent])
+            left[grandparent] = rotateWithRightChild(parent);
+        else
+            right[grandparent] = rotateWithRightChild(parent);
+        updateHeights(grandparent);
+    }
+
+    /**
+     * Internal method to find the parent of the node with the specified value.
+     * @param t The node where to begin the search.
+     * @param x The target nodes' value.
+     * @return x's Parent node, or the root itself if x is at the root.
+     */
+    private int findParent(int t, AnyType x) {
+        while (true) {
+            if (t == NIL)
+                throw new NoSuchElementException("This tree does not contain " + x);
+            int compareResult = x.compareTo(elementAt(t));
+            if (left[t] != NIL && elements[left[t]].equals(x))
+                return t;
+            if (right[t] != NIL && elements[right[t]].equals(x))
+                return t;
+            if (compareResult < 0)
+                t = left[t];
+            else if (compareResult > 0)
+                t = right[t];
+            else
+                return t;
+        }
+    }
+
+    /**
+     * Internal method to refresh the cached heights on the path from the root
+     * down to a node whose subtree changed shape.
+     */
+    private void updateHeights(int t) {
+        int depth = 0;
+        int r = root;
+        while (r != t) {
+            push(depth++, r);
+            r = elementAt(t).compareTo(elementAt(r)) < 0 ? left[r] : right[r];
+        }
+        push(depth++, t);
+        while (depth > 0) {
+            r = path[--depth];
+            height[r] = Math.max(height(left[r]), height(right[r])) + 1;
+        }
+    }
+
+    /**
+     * Printout the tree level-by-level.
+     */
+    public void printLevels() {
+        if (isEmpty())
+            throw new UnderflowException();
+        int[] qu = new int[size(root)]; // each node is queued exactly once
+        int head = 0;
+        int tail = 0;
+        StringBuilder line = new StringBuilder();
+        qu[tail++] = root;
+        while (head < tail) {
+            for (int end = tail; head < end; head++) { // one level per pass
+                int x = qu[head];
+                line.append(elements[x]).append(' ');
+                if (left[x] != NIL)
+                    qu[tail++] = left[x];
+                if (right[x] != NIL)
+                    qu[tail++] = right[x];
+            }
+            System.out.println(line);
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * Insert into the tree; duplicates are ignored.
+     *
+     * @param x the item to insert.
+     */
+    public void insert(AnyType x) {
+        if (root == NIL) {
+            root = allocate(x);
+            return;
+        }
+        int depth = 0;
+        int compareResult;
+        int r = root;
+        while (true) {
+            compareResult = x.compareTo(elementAt(r));
+            if (compareResult == 0)
+                return; // Duplicate; do nothing
+            push(depth++, r);
+            int next = (compareResult < 0) ? left[r] : right[r];
+            if (next == NIL)
+                break;
+            r = next;
+        }
+        int n = allocate(x);
+        if (compareResult < 0)
+            left[r] = n;
+        else
+            right[r] = n;
+        root = retrace(depth);
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     *
+     * @param x the item to remove.
+     */
+    public void remove(AnyType x) {
+        int depth = 0;
+        int r = root;
+        while (r != NIL) {
+            int compareResult = x.compareTo(elementAt(r));
+            if (compareResult == 0)
+                break;
+            push(depth++, r);
+            r = (compareResult < 0) ? left[r] : right[r];
+        }
+        if (r == NIL)
+            return; // Item not found; do nothing
+
+        int parent;
+        if (left[r] != NIL && right[r] != NIL) { // Two children
+            push(depth++, r);
+            int min = right[r];
+            while (left[min] != NIL) {
+                push(depth++, min);
+                min = left[min];
+            }
+            elements[r] = elements[min];
+            parent = path[depth - 1];
+            if (parent == r)
+                right[parent] = right[min];
+            else
+                left[parent] = right[min];
+            release(min);
+        } else {
+            int child = (left[r] != NIL) ? left[r] : right[r];
+            release(r);
+            if (depth == 0) {
+                root = child;
+                return;
+            }
+            parent = path[depth - 1];
+            if (left[parent] == r)
+                left[parent] = child;
+            else
+                right[parent] = child;
+        }
+        root = retrace(depth);
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public AnyType findMin() {
+        if (isEmpty())
+            throw new UnderflowException();
+        int t = root;
+        while (left[t] != NIL)
+            t = left[t];
+        return elementAt(t);
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public AnyType findMax() {
+        if (isEmpty())
+            throw new UnderflowException();
+        int t = root;
+        while (right[t] != NIL)
+            t = right[t];
+        return elementAt(t);
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(AnyType x) {
+        int t = root;
+        while (t != NIL) {
+            int compareResult = x.compareTo(elementAt(t));
+
+            if (compareResult < 0)
+                t = left[t];
+            else if (compareResult > 0)
+                t = right[t];
+            else
+                return true; // Match
+        }
+        return false;
+    }
+
+    /**
+     * Make the tree logically empty, releasing every node slot.
+     */
+    public void makeEmpty() {
+        Arrays.fill(elements, 0, allocated, null);
+        root = NIL;
+        free = NIL;
+        allocated = 0;
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        if (isEmpty()) {
+            System.out.println("Empty tree");
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        int[] stack = new int[height(root) + 1];
+        int top = 0;
+        int t = root;
+        while (t != NIL || top > 0) {
+            while (t != NIL) {
+                stack[top++] = t;
+                t = left[t];
+            }
+            t = stack[--top];
+            out.append(elements[t]).append(' ');
+            t = right[t];
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * Internal method to take a node slot from the free list, or from the
+     * unused end of the arrays, growing them when full.
+     *
+     * @param x the item for the new node.
+     * @return the index of the new node.
+     */
+    private int allocate(AnyType x) {
+        int n;
+        if (free != NIL) {
+            n = free;
+            free = left[n];
+        } else {
+            if (allocated == elements.length) {
+                int capacity = allocated * 2;
+                elements = Arrays.copyOf(elements, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                height = Arrays.copyOf(height, capacity);
+                size = Arrays.copyOf(size, capacity);
+            }
+            n = allocated++;
+        }
+        elements[n] = x;
+        left[n] = NIL;
+        right[n] = NIL;
+        height[n] = 0;
+        size[n] = 1;
+        return n;
+    }
+
+    /**
+     * Internal method to return a node slot to the free list.
+     */
+    private void release(int n) {
+        elements[n] = null;
+        right[n] = NIL;
+        left[n] = free;
+        free = n;
+    }
+
+    /**
+     * Internal method to record a node on the search path.
+     */
+    private void push(int depth, int t) {
+        if (depth == path.length)
+            path = Arrays.copyOf(path, depth * 2);
+        path[depth] = t;
+    }
+
+    /**
+     * Internal method to walk back up a recorded search path after its
+     * deepest node changed, refreshing heights and rebalancing each ancestor.
+     * @param depth The number of nodes on the path.
+     * @return the new root of the tree.
+     */
+    private int retrace(int depth) {
+        int child = path[--depth];
+        int t = balance(child);
+        while (depth > 0) {
+            int p = path[--depth];
+            if (left[p] == child)
+                left[p] = t;
+            else
+                right[p] = t;
+            child = p;
+            t = balance(p);
+        }
+        return t;
+    }
+
+    /**
+     * Internal method to restore the cached height and size of a subtree root
+     * and, in AVL mode, to rebalance it.
+     */
+    private int balance(int t) {
+        if (mode == BinarySearchTree.Mode.AVL) {
+            if (height(left[t]) - height(right[t]) > ALLOWED_IMBALANCE) {
+                int lt = left[t];
+                if (height(left[lt]) < height(right[lt]))
+                    left[t] = rotateWithRightChild(lt);
+                t = rotateWithLeftChild(t);
+            } else if (height(right[t]) - height(left[t]) > ALLOWED_IMBALANCE) {
+                int rt = right[t];
+                if (height(right[rt]) < height(left[rt]))
+                    right[t] = rotateWithLeftChild(rt);
+                t = rotateWithRightChild(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    /**
+     * Rotate binary tree node with left child.
+     */
+    private int rotateWithLeftChild(int k2) {
+        int k1 = left[k2];
+        left[k2] = right[k1];
+        right[k1] = k2;
+        update(k2);
+        update(k1);
+        return k1;
+    }
+
+    /**
+     * Rotate binary tree node with right child.
+     */
+    private int rotateWithRightChild(int k1) {
+        int k2 = right[k1];
+        right[k1] = left[k2];
+        left[k2] = k1;
+        update(k1);
+        update(k2);
+        return k2;
+    }
+
+    /**
+     * Internal method to recompute the cached height and size of a node from its children.
+     */
+    private void update(int t) {
+        height[t] = Math.max(height(left[t]), height(right[t])) + 1;
+        size[t] = size(left[t]) + size(right[t]) + 1;
+    }
+
+    /**
+     * Return the height of node t, or -1, if NIL.
+     */
+    private int height(int t) {
+        return t == NIL ? -1 : height[t];
+    }
+
+    /**
+     * Return the number of nodes in the subtree rooted at t, or 0, if NIL.
+     */
+    private int size(int t) {
+        return t == NIL ? 0 : size[t];
+    }
+
+    /**
+     * Return the item of node t.
+     */
+    @SuppressWarnings("unchecked")
+    private AnyType elementAt(int t) {
+        return (AnyType) elements[t];
+    }
+
+    private static final int NIL = -1;
+    private static final int ALLOWED_IMBALANCE = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] elements; // The data in each node
+    private int[] left; // Left child of each node, or the next free slot
+    private int[] right; // Right child of each node
+    private int[] height; // Height of the subtree rooted at each node
+    private int[] size; // Number of nodes in the subtree rooted at each node
+
+    /** The index of the tree root. */
+    private int root;
+
+    /** Head of the list of freed slots, chained through left[]. */
+    private int free;
+
+    /** Number of slots ever handed out since the last makeEmpty. */
+    private int allocated;
+
+    /** The balancing strategy chosen at construction. */
+    private final BinarySearchTree.Mode mode;
+
+    /** Reusable buffer holding the search path of the current insert or remove. */
+    private int[] path;
+}
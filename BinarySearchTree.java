@@ -1,5 +1,18 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.naming.OperationNotSupportedException;
 
 // ******************PUBLIC OPERATIONS*********************
@@ -14,50 +27,330 @@ import javax.naming.OperationNotSupportedException;
 // ******************ERRORS********************************
 // Throws UnderflowException as appropriate
 //
-// Implements an unbalanced binary search tree.
-//  * Note that all "matching" is based on the compareTo method.
+// Implements an unbalanced binary search tree, or an AVL tree when
+// constructed with Mode.AVL, or a splay tree with Mode.SPLAY.
+//  * Note that all "matching" is based on the compareTo method, or on the
+//    Comparator the tree was constructed with.
 //  * @author of the aforementioned operations: Mark Allen Weiss
 //
 // ******************************ADDITIONAL METHODS****************************
-// int nodeCount()  Returns the count of nodes. 
+// int nodeCount()  Returns the count of nodes in constant time.
+// int rank(x)  Returns the number of items smaller than x.
+// Comparable select(k)  Returns the item of rank k (the k-th smallest, from 0).
 // boolean isFull()  Returns true if the tree is full binary tree.
 // boolean compareStructure(x)  Returns true if the tree structure matches x.
-// boolean equals(x)  Returns true if the tree is identical x.
-// BinarySearchTree copy()  Creates a new copy of the tree.
+// boolean isIdentical(x)  Returns true if the tree is identical x.
+// BinarySearchTree copy()  Creates a new copy of the tree in O(n).
+// BinarySearchTree snapshot()  Creates a copy-on-write copy of the tree in O(1).
+// restore(s)  Rolls the tree back to snapshot s in O(1).
+// FrozenBinarySearchTree freeze()  Creates a read-only copy laid out for fast contains.
 // BinarySearchTree mirror(x)  Creates and returns a mirror of the original tree.
 // boolean isMirror  Returns true if the tree is a mirror of the passed tree.
 // rotateRight(x)  Performs a single rotation on the node with value of x.
 // rotateLeft(x)  As above but left.
 // printLevels()  Performs a level-by-level printing of the tree.
+// writeLevels(out), writeTree(out)  As printLevels and printTree, but to any Appendable.
+// Stream levelOrder()  Returns a stream of the items in level order.
+// Iterator iterator()  Returns a fail-fast iterator over the items in sorted order.
+// Spliterator spliterator()  Returns a sorted spliterator that splits on subtree boundaries.
+// Stream stream()  Returns a sequential stream of the items in sorted order.
+// Comparable floor(x), ceiling(x), lower(x), higher(x)  Nearest items, or null.
+// int rangeCount(lo, hi)  Returns the number of items between lo and hi inclusive.
+// NavigableSet subSet/headSet/tailSet/descendingSet  Live views over a key range.
+// The tree is also a java.util.NavigableSet, so it can stand in for a TreeSet.
+// BinarySearchTree(Mode.AVL)  Constructs a self-balancing (AVL) tree.
+// BinarySearchTree(Mode.SPLAY)  Constructs a splay tree, which moves each item accessed to the root.
+// BinarySearchTree(mode, comparator)  Constructs a tree ordered by comparator instead of compareTo.
+// BinarySearchTree(mode, comparator, prefix)  As above, but each node also keeps a long key prefix
+//   that settles most comparisons without calling the comparator; see STRING_PREFIX.
+// BinarySearchTree bulkLoad(items)  Builds a height-balanced tree from items in O(n) if sorted.
+// Metrics enableMetrics()  Counts comparisons and search path lengths; also a JMX MXBean.
+// disableMetrics(), metrics()  Stops collecting metrics, or returns them (null when off).
+// enableLookupCache(n)  Answers repeated contains calls from a cache of the last n results.
+// enableFingerSearch()  Starts each contains from the path of the previous one.
+// disableLookupCache(), disableFingerSearch()  Turns either off again.
+// int insertEach(items), removeEach(items)  Sorts a batch and merges it with the tree in one descent.
+// BitSet containsEach(items)  Looks up a batch in one descent; bit i is set if items[i] is present.
+// BinarySearchTree union(x), intersection(x), difference(x)  Set algebra by split and join.
+// parallelIsFull(), parallelIsIdentical(x), parallelCompareStructure(x), parallelMirror()
+//   Fork/join versions of the above; setParallelThreshold(n) sets where they stop splitting.
 // ******************ERRORS****************************************************
 // Throws NoSuchElementException
+// Throws OperationNotSupportedException on manual rotations of an AVL tree,
+//   or of a node without the child it would rotate with
+// Throws IndexOutOfBoundsException from select when k is not a valid rank
+// Throws IllegalArgumentException when restoring or combining trees with different orderings
+// Throws ConcurrentModificationException from iterators of a modified tree
 //
 // 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
 // Project #2
 // @author Gavin John Dunnett
-public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
+public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> extends AbstractSet<AnyType>
+        implements NavigableSet<AnyType> {
+    /**
+     * Balancing strategies that can be selected when the tree is constructed.
+     */
+    public enum Mode {
+        /** Plain binary search tree; the shape depends on insertion order. */
+        UNBALANCED,
+        /** AVL tree; insert and remove rebalance so the height stays O(log n). */
+        AVL,
+        /**
+         * Splay tree; every search rotates the last node it reaches to the
+         * root: the item itself for contains, insert, findMin and findMax,
+         * the removed node's parent for remove, and the end of the search
+         * path for a miss or for floor, ceiling, lower and higher. Frequently
+         * used items stay near the top and a sequence of these operations
+         * takes O(log n) amortized time each. Since the reads change the
+         * tree's shape, they must not run concurrently with other reads.
+         * They leave the items alone, so iterators and spliterators find
+         * their place again instead of failing; only level-order iteration,
+         * which follows the shape, fails fast.
+         */
+        SPLAY
+    }
+
     /**
      * Construct the tree.
      */
     public BinarySearchTree() {
+        this(Mode.UNBALANCED);
+    }
+
+    /**
+     * Construct the tree using the specified balancing strategy.
+     * 
+     * @param mode the balancing strategy.
+     */
+    public BinarySearchTree(Mode mode) {
+        this(mode, null, null);
+    }
+
+    /**
+     * Construct the tree using the specified balancing strategy, ordering
+     * the items by a comparator instead of their compareTo method.
+     * 
+     * @param mode the balancing strategy.
+     * @param comparator the ordering, or null for the natural ordering.
+     */
+    public BinarySearchTree(Mode mode, Comparator<? super AnyType> comparator) {
+        this(mode, comparator, null);
+    }
+
+    /**
+     * Construct the tree using the specified balancing strategy and ordering,
+     * keeping a fixed-width prefix of each item's key in its node. Searches
+     * compute the prefix of the item sought once and compare it with each
+     * node's prefix as an unsigned long; only when the two prefixes are equal
+     * is the full comparison made. This pays off when comparisons are costly,
+     * such as for long strings or composite keys.
+     * <p>
+     * The prefix must agree with the ordering: whenever x orders before y,
+     * prefix(x) must be no greater than prefix(y) as unsigned longs.
+     * 
+     * @param mode the balancing strategy.
+     * @param comparator the ordering, or null for the natural ordering.
+     * @param prefix the key prefix function, or null for none.
+     */
+    public BinarySearchTree(Mode mode, Comparator<? super AnyType> comparator, ToLongFunction<? super AnyType> prefix) {
+        this.mode = mode;
+        this.comparator = comparator;
+        this.prefix = prefix;
         root = null;
     }
 
+    /**
+     * A key prefix for strings in their natural ordering: the first four
+     * characters, 16 bits each, with missing characters taken as zero.
+     * Strings that differ within their first four characters are ordered by
+     * the prefix alone.
+     */
+    public static final ToLongFunction<String> STRING_PREFIX = s -> {
+        long key = 0;
+        int n = Math.min(s.length(), 4);
+        for (int i = 0; i < n; i++)
+            key |= (long) s.charAt(i) << (48 - 16 * i);
+        return key;
+    };
+
+    /**
+     * Builds a height-balanced tree holding the specified items.
+     * Sorted input is detected and loaded in O(n) with no per-item searches;
+     * unsorted input is sorted first. Duplicates are ignored.
+     * 
+     * @param items the items to load.
+     * @return a new unbalanced-mode tree of minimal height.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> BinarySearchTree<AnyType> bulkLoad(
+            Collection<? extends AnyType> items) {
+        return bulkLoad(items, Mode.UNBALANCED);
+    }
+
+    /**
+     * Builds a height-balanced tree holding the specified items.
+     * 
+     * @param items the items to load.
+     * @param mode the balancing strategy of the new tree.
+     * @return a new tree of minimal height.
+     */
+    @SuppressWarnings("unchecked")
+    public static <AnyType extends Comparable<? super AnyType>> BinarySearchTree<AnyType> bulkLoad(
+            Collection<? extends AnyType> items, Mode mode) {
+        return load((AnyType[]) items.toArray(new Comparable<?>[items.size()]), mode);
+    }
+
+    /**
+     * Builds a height-balanced tree holding the specified items.
+     * The array is not modified.
+     * 
+     * @param items the items to load.
+     * @return a new unbalanced-mode tree of minimal height.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> BinarySearchTree<AnyType> bulkLoad(AnyType[] items) {
+        return bulkLoad(items, Mode.UNBALANCED);
+    }
+
+    /**
+     * Builds a height-balanced tree holding the specified items.
+     * The array is not modified.
+     * 
+     * @param items the items to load.
+     * @param mode the balancing strategy of the new tree.
+     * @return a new tree of minimal height.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> BinarySearchTree<AnyType> bulkLoad(AnyType[] items,
+            Mode mode) {
+        return load(items.clone(), mode);
+    }
+
+    /**
+     * Internal method that sorts and de-duplicates a private array of items
+     * in place and builds a tree over what remains.
+     */
+    private static <AnyType extends Comparable<? super AnyType>> BinarySearchTree<AnyType> load(AnyType[] a,
+            Mode mode) {
+        int n = sortDistinct(a, null);
+        BinarySearchTree<AnyType> tree = new BinarySearchTree<>(mode);
+        tree.root = tree.build(a, 0, n);
+        return tree;
+    }
+
+    /**
+     * Internal method that sorts a private array of items in place, unless
+     * already sorted, and moves the distinct items to the front.
+     * 
+     * @return the number of distinct items.
+     */
+    private static <AnyType extends Comparable<? super AnyType>> int sortDistinct(AnyType[] a,
+            Comparator<? super AnyType> c) {
+        boolean sorted = true;
+        for (int i = 1; i < a.length && sorted; i++)
+            sorted = compare(c, a[i - 1], a[i]) <= 0;
+        if (!sorted)
+            Arrays.sort(a, c);
+        int n = 0; // drop duplicates, which are now adjacent
+        for (int i = 0; i < a.length; i++)
+            if (n == 0 || compare(c, a[n - 1], a[i]) != 0)
+                a[n++] = a[i];
+        return n;
+    }
+
+    /**
+     * Internal method to build a perfectly balanced subtree from sorted, distinct items.
+     * Recursion depth is logarithmic in the number of items.
+     * 
+     * @param a the sorted items.
+     * @param lo the index of the first item in the subtree.
+     * @param hi one past the index of the last item in the subtree.
+     * @return the root of the subtree.
+     */
+    private BinaryNode<AnyType> build(AnyType[] a, int lo, int hi) {
+        if (lo >= hi)
+            return null;
+        int mid = (lo + hi) >>> 1;
+        BinaryNode<AnyType> t = new BinaryNode<>(a[mid], build(a, lo, mid), build(a, mid + 1, hi), owner);
+        t.prefix = prefix(a[mid]);
+        t.height = Math.max(height(t.left), height(t.right)) + 1;
+        t.size = hi - lo;
+        return t;
+    }
+
     /**
      * Count the number of nodes.
+     * Every node caches the size of its subtree, so this takes constant time.
      */
     public int nodeCount() {
-        return nodeCount(root);
+        return size(root);
     }
 
     /**
-     * Internal method to count the number of nodes
+     * Returns the number of items in the tree that are smaller than x.
+     * x does not have to be present in the tree.
+     * 
+     * @param x the item to rank.
+     * @return the count of smaller items.
      */
-    private int nodeCount(BinaryNode<AnyType> r) {
-        if (r == null)
+    public int rank(AnyType x) {
+        return rank(x, false);
+    }
+
+    /**
+     * Internal method to count the items smaller than x, or no greater than
+     * x if inclusive.
+     */
+    private int rank(AnyType x, boolean inclusive) {
+        int rank = 0;
+        long key = prefix(x);
+        BinaryNode<AnyType> t = root;
+        while (t != null) {
+            int compareResult = compare(x, key, t);
+
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0) {
+                rank += size(t.left) + 1;
+                t = t.right;
+            } else
+                return rank + size(t.left) + (inclusive ? 1 : 0); // Match
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the number of items x with lo <= x <= hi.
+     * 
+     * @param lo the lower bound.
+     * @param hi the upper bound.
+     * @return the count of items in the range.
+     */
+    public int rangeCount(AnyType lo, AnyType hi) {
+        if (compare(lo, hi) > 0)
             return 0;
-        else
-            return 1 + nodeCount(r.left) + nodeCount(r.right);
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    /**
+     * Returns the item of rank k, that is the k-th smallest item counting
+     * from 0, so that select(rank(x)) is x for every x in the tree.
+     * 
+     * @param k the rank of the item.
+     * @return the item of rank k.
+     * @throws IndexOutOfBoundsException if k is negative or not less than nodeCount().
+     */
+    public AnyType select(int k) {
+        if (k < 0 || k >= size(root))
+            throw new IndexOutOfBoundsException("Rank " + k + " is out of range for a tree of " + size(root) + " nodes");
+        BinaryNode<AnyType> t = root;
+        while (true) {
+            int leftSize = size(t.left);
+            if (k < leftSize)
+                t = t.left;
+            else if (k > leftSize) {
+                k -= leftSize + 1;
+                t = t.right;
+            } else
+                return t.element;
+        }
     }
 
     /**
@@ -75,11 +368,20 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     private boolean isFull(BinaryNode<AnyType> r) {
         if (r == null) // test first since subsequent methods need t!=null
             return true;
-        if (r.left == null && r.right != null)
-            return false; // not full, end calls
-        if (r.left != null && r.right == null)
-            return false; // not full, end calls
-        return isFull(r.left) && isFull(r.right); // keep checking
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>();
+        stack.push(r);
+        while (!stack.isEmpty()) {
+            r = stack.pop();
+            if (r.left == null && r.right != null)
+                return false; // not full, end search
+            if (r.left != null && r.right == null)
+                return false; // not full, end search
+            if (r.left != null) { // both children present, keep checking
+                stack.push(r.right);
+                stack.push(r.left);
+            }
+        }
+        return true;
     }
 
     /**
@@ -93,85 +395,266 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
      * Internal method to determine if this tree's structure matches another tree's.
      */
     private boolean compareStructure(BinaryNode<AnyType> r1, BinaryNode<AnyType> r2) {
-        if (r1 == null && r2 == null) // test first since subsequent methods need both != null
-            return true;
-        if (r1 == null && r2 != null)
-            return false;
-        if (r1 != null && r2 == null)
-            return false;
-        return compareStructure(r1.left, r2.left) && compareStructure(r1.right, r2.right);
+        if (r1 == null || r2 == null) // test first since subsequent checks need both != null
+            return r1 == r2;
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>(); // pending pairs, r1 pushed above r2
+        stack.push(r2);
+        stack.push(r1);
+        while (!stack.isEmpty()) {
+            r1 = stack.pop();
+            r2 = stack.pop();
+            if ((r1.left == null) != (r2.left == null) || (r1.right == null) != (r2.right == null))
+                return false;
+            if (r1.right != null) {
+                stack.push(r2.right);
+                stack.push(r1.right);
+            }
+            if (r1.left != null) {
+                stack.push(r2.left);
+                stack.push(r1.left);
+            }
+        }
+        return true;
     }
 
     /**
      * Compares the current tree to another tree and returns true if they are identical.
      */
-    public boolean equals(BinarySearchTree<AnyType> x) {
-        return equals(x.root, root);
+    public boolean isIdentical(BinarySearchTree<AnyType> x) {
+        return identical(x.root, root);
     }
 
     /**
      * Internal method that compares this tree to another and returns true if they are identical.
      */
-    private boolean equals(BinaryNode<AnyType> r1, BinaryNode<AnyType> r2) {
-        if (r1 == null && r2 == null) // test first since subsequent methods need both != null
-            return true;
-        if (r1 != null && r2 != null)
-            return r1.element.equals(r2.element) && equals(r1.left, r2.left) && equals(r1.right, r2.right);
-        return false;
+    private boolean identical(BinaryNode<AnyType> r1, BinaryNode<AnyType> r2) {
+        if (r1 == null || r2 == null) // test first since subsequent checks need both != null
+            return r1 == r2;
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>(); // pending pairs, r1 pushed above r2
+        stack.push(r2);
+        stack.push(r1);
+        while (!stack.isEmpty()) {
+            r1 = stack.pop();
+            r2 = stack.pop();
+            if (!r1.element.equals(r2.element))
+                return false;
+            if ((r1.left == null) != (r2.left == null) || (r1.right == null) != (r2.right == null))
+                return false;
+            if (r1.right != null) {
+                stack.push(r2.right);
+                stack.push(r1.right);
+            }
+            if (r1.left != null) {
+                stack.push(r2.left);
+                stack.push(r1.left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the tree in constant time. The snapshot shares
+     * every node with the tree; from now on each of the two copies a shared
+     * node before changing it, so an insert, remove or rotation copies only
+     * the O(h) nodes it touches and neither tree sees the other's changes.
+     * A snapshot nobody changes can be read by any number of threads without
+     * locks while this tree is being written, once it has been safely
+     * published to them.
+     * 
+     * @return a tree holding the items this tree holds now.
+     */
+    public BinarySearchTree<AnyType> snapshot() {
+        BinarySearchTree<AnyType> s = newTree();
+        s.root = root;
+        owner = new Object(); // every current node is now shared
+        return s;
+    }
+
+    /**
+     * Returns an immutable copy of the tree laid out for fast lookups.
+     * The tree itself stays writable and later changes are not seen by
+     * the copy.
+     * 
+     * @return the frozen copy.
+     */
+    public FrozenBinarySearchTree<AnyType> freeze() {
+        return new FrozenBinarySearchTree<>(this);
+    }
+
+    /**
+     * Makes the tree hold the items of a snapshot again, in constant time,
+     * for example to roll back a failed batch. The snapshot is not changed
+     * and can be restored again later.
+     * 
+     * @param s a snapshot of a tree with the same balancing mode and ordering.
+     * @throws IllegalArgumentException if the balancing modes or orderings differ.
+     */
+    public void restore(BinarySearchTree<AnyType> s) {
+        if (s.mode != mode)
+            throw new IllegalArgumentException("Cannot restore a " + s.mode + " snapshot into a " + mode + " tree");
+        checkOrdering(s);
+        root = s.root;
+        s.owner = new Object(); // the snapshot's own nodes are now shared too
+        modCount++;
+        dropFinger();
     }
 
     /**
      * Creates and returns a new tree that is a copy of the original tree.
+     * Nodes are cloned directly, so no comparisons are made.
      */
     public BinarySearchTree<AnyType> copy() {
-        return copy(root, new BinarySearchTree<AnyType>());
+        BinarySearchTree<AnyType> x = newTree();
+        x.root = x.copy(root, false);
+        return x;
     }
 
     /**
-     * Internal method to create a new tree that is a copy of the original tree.
+     * Internal method to clone a subtree, optionally as its mirror image.
+     * 
+     * @param r the node that roots the subtree.
+     * @param mirrored true to interchange every node's left and right children.
+     * @return the root of the clone.
      */
-    private BinarySearchTree<AnyType> copy(BinaryNode<AnyType> r, BinarySearchTree<AnyType> x) {
-        if (r == null) // test first since subsequent methods need r != null
-            return x;
-        x.insert(r.element);
-        if (r.left != null)
-            copy(r.left, x);
-        if (r.right != null)
-            copy(r.right, x);
-        return x;
+    private BinaryNode<AnyType> copy(BinaryNode<AnyType> r, boolean mirrored) {
+        if (r == null)
+            return null;
+        BinaryNode<AnyType> c = copyNode(r);
+        copyChildren(r, c, mirrored);
+        return c;
+    }
+
+    /**
+     * Internal method to clone the subtrees below a node into its clone.
+     * 
+     * @param r the original node.
+     * @param c the clone of r, whose children are set.
+     * @param mirrored true to interchange every node's left and right children.
+     */
+    private void copyChildren(BinaryNode<AnyType> r, BinaryNode<AnyType> c, boolean mirrored) {
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>(); // pending pairs, original pushed above clone
+        stack.push(c);
+        stack.push(r);
+        while (!stack.isEmpty()) {
+            BinaryNode<AnyType> from = stack.pop();
+            BinaryNode<AnyType> to = stack.pop();
+            BinaryNode<AnyType> lt = (from.left == null) ? null : copyNode(from.left);
+            BinaryNode<AnyType> rt = (from.right == null) ? null : copyNode(from.right);
+            to.left = mirrored ? rt : lt;
+            to.right = mirrored ? lt : rt;
+            if (lt != null) {
+                stack.push(lt);
+                stack.push(from.left);
+            }
+            if (rt != null) {
+                stack.push(rt);
+                stack.push(from.right);
+            }
+        }
+    }
+
+    /**
+     * Internal method to clone a single node, without its children, as a
+     * node owned by this tree.
+     */
+    private BinaryNode<AnyType> copyNode(BinaryNode<AnyType> r) {
+        BinaryNode<AnyType> c = new BinaryNode<>(r.element, owner);
+        c.prefix = r.prefix;
+        c.height = r.height;
+        c.size = r.size;
+        return c;
     }
 
     /**
      * Creates and returns a new tree that is a mirror image of this tree.
      */
     public BinarySearchTree<AnyType> mirror() {
-        BinarySearchTree<AnyType> mirror = copy();
-        mirror.interchangeChildren(mirror.root);
+        BinarySearchTree<AnyType> mirror = newTree();
+        mirror.root = mirror.copy(root, true);
         return mirror;
     }
 
     /**
-     * Internal method that recursively interchanges every nodes left and right children.
+     * Returns true if the tree is a mirror of the specified tree.
+     * Both trees are walked together, so no mirrored copy is built.
+     */
+    public boolean isMirror(BinarySearchTree<AnyType> x) {
+        BinaryNode<AnyType> r1 = root;
+        BinaryNode<AnyType> r2 = x.root;
+        if (r1 == null || r2 == null) // test first since subsequent checks need both != null
+            return r1 == r2;
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>(); // pending pairs, r1 pushed above r2
+        stack.push(r2);
+        stack.push(r1);
+        while (!stack.isEmpty()) {
+            r1 = stack.pop();
+            r2 = stack.pop();
+            if (!r1.element.equals(r2.element))
+                return false;
+            if ((r1.left == null) != (r2.right == null) || (r1.right == null) != (r2.left == null))
+                return false;
+            if (r1.right != null) {
+                stack.push(r2.left);
+                stack.push(r1.right);
+            }
+            if (r1.left != null) {
+                stack.push(r2.right);
+                stack.push(r1.left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the subtree size at or below which the parallel operations and
+     * the set operations stop splitting work into fork/join tasks.
+     * 
+     * @param threshold the number of nodes, at least 1.
+     * @throws IllegalArgumentException if threshold is less than 1.
      */
-    private void interchangeChildren(BinaryNode<AnyType> r) {
-        if (r == null)
-            return;
-        if (r.left != null)
-            interchangeChildren(r.left);
-        if (root.right != null)
-            interchangeChildren(r.right);
-        BinaryNode<AnyType> lt = r.left;
-        BinaryNode<AnyType> rt = r.right;
-        r.right = lt;
-        r.left = rt;
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Parallel threshold must be at least 1 but was " + threshold);
+        parallelThreshold = threshold;
     }
 
     /**
-     * Returns true if the tree is a mirror of the specified tree.
+     * As isFull, but checks subtrees above the parallel threshold on the
+     * common fork/join pool. The first node found with one child stops
+     * the tasks that have not finished yet.
      */
-    public boolean isMirror(BinarySearchTree<AnyType> x) {
-        BinarySearchTree<AnyType> mirrorOfThis = mirror();
-        return mirrorOfThis.compareStructure(x) && mirrorOfThis.equals(x);
+    public boolean parallelIsFull() {
+        if (isEmpty())
+            throw new UnderflowException();
+        return new ParallelCheck(Check.FULL, root, null, new AtomicBoolean()).invoke();
+    }
+
+    /**
+     * As compareStructure, but in parallel as for parallelIsFull.
+     */
+    public boolean parallelCompareStructure(BinarySearchTree<AnyType> t) {
+        return new ParallelCheck(Check.STRUCTURE, root, t.root, new AtomicBoolean()).invoke();
+    }
+
+    /**
+     * As isIdentical, but in parallel as for parallelIsFull.
+     */
+    public boolean parallelIsIdentical(BinarySearchTree<AnyType> x) {
+        return new ParallelCheck(Check.EQUAL, root, x.root, new AtomicBoolean()).invoke();
+    }
+
+    /**
+     * As mirror, but subtrees above the parallel threshold are copied on
+     * the common fork/join pool.
+     */
+    public BinarySearchTree<AnyType> parallelMirror() {
+        BinarySearchTree<AnyType> mirror = newTree();
+        mirror.parallelThreshold = parallelThreshold;
+        if (root != null) {
+            mirror.root = mirror.copyNode(root);
+            mirror.new ParallelMirror(root, mirror.root).invoke();
+        }
+        return mirror;
     }
 
     /**
@@ -181,28 +664,28 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     public void rotateRight(AnyType element) throws OperationNotSupportedException {
         if (isEmpty())
             throw new UnderflowException();
+        if (mode == Mode.AVL)
+            throw new OperationNotSupportedException("Manual rotations are not supported on AVL trees.");
+        ownPathTo(element);
         BinaryNode<AnyType> parent = findParent(root, element);
         if (parent == root && root.left == null)
             throw new OperationNotSupportedException("Only tree roots with left children can be rotated right.");
         BinaryNode<AnyType> grandparent = findParent(root, parent.element);
         BinaryNode<AnyType> pivot = parent.left;
-        BinaryNode<AnyType> rightchild = pivot.right;
-        if (parent.left != pivot)
+        if (pivot == null)
             throw new OperationNotSupportedException("Only left children can be rotated right.");
+        modCount++;
         if (parent == root) { // special case: pivot will become the tree's new root
             if (root.left == null) // root has no left child, nothing changes on this roate
                 return;
-            root.left = pivot.right;
-            pivot.right = root;
-            root = pivot;
+            root = rotateWithLeftChild(root);
             return;
         }
-        parent.left = rightchild;
-        pivot.right = parent;
         if (parent == grandparent.left)
-            grandparent.left = pivot;
-        if (parent == grandparent.right)
-            grandparent.right = pivot;
+            grandparent.left = rotateWithLeftChild(parent);
+        else if (parent == grandparent.right)
+            grandparent.right = rotateWithLeftChild(parent);
+        updateHeights(grandparent);
     }
 
     /**
@@ -212,28 +695,235 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     public void rotateLeft(AnyType element) throws OperationNotSupportedException {
         if (isEmpty())
             throw new UnderflowException();
+        if (mode == Mode.AVL)
+            throw new OperationNotSupportedException("Manual rotations are not supported on AVL trees.");
+        ownPathTo(element);
         BinaryNode<AnyType> parent = findParent(root, element);
         if (parent == root && root.right == null)
             throw new OperationNotSupportedException("Only tree roots with right children can be rotated left.");
         BinaryNode<AnyType> grandparent = findParent(root, parent.element);
         BinaryNode<AnyType> pivot = parent.right;
-        BinaryNode<AnyType> leftchild = pivot.left;
-        if (parent.right != pivot)
+        if (pivot == null)
             throw new OperationNotSupportedException("Only right children can be rotated left.");
+        modCount++;
         if (parent == root) { // special case: pivot will become the tree's new root
             if (root.right == null) // root has no right child, nothing changes on this roate
                 return;
-            root.right = pivot.left;
-            pivot.left = root;
-            root = pivot;
+            root = rotateWithRightChild(root);
             return;
         }
-        parent.right = leftchild;
-        pivot.left = parent;
         if (parent == grandparent.left)
-            grandparent.left = pivot;
-        if (parent == grandparent.right)
-            grandparent.right = pivot;
+            grandparent.left = rotateWithRightChild(parent);
+        else if (parent == grandparent.right)
+            grandparent.right = rotateWithRightChild(parent);
+        updateHeights(grandparent);
+    }
+
+    /**
+     * Internal method to refresh the cached heights on the path from the root
+     * down to a node whose subtree changed shape.
+     * @param t The deepest node whose height may be stale.
+     */
+    private void updateHeights(BinaryNode<AnyType> t) {
+        int depth = 0;
+        BinaryNode<AnyType> r = root;
+        while (r != t) {
+            push(depth++, r);
+            r = compare(t.element, t.prefix, r) < 0 ? r.left : r.right;
+        }
+        push(depth++, t);
+        while (depth > 0) {
+            r = path[--depth];
+            path[depth] = null;
+            r.height = Math.max(height(r.left), height(r.right)) + 1;
+        }
+    }
+
+    /**
+     * Internal method to record a node on the search path, growing the path
+     * buffer when a degenerate tree is deeper than it.
+     * @param depth The position of the node on the path.
+     * @param t The node.
+     */
+    @SuppressWarnings("unchecked")
+    private void push(int depth, BinaryNode<AnyType> t) {
+        if (path == null)
+            path = (BinaryNode<AnyType>[]) new BinaryNode<?>[INITIAL_PATH_LENGTH];
+        else if (depth == path.length)
+            path = Arrays.copyOf(path, depth * 2);
+        path[depth] = t;
+    }
+
+    /**
+     * Internal method to get a node this tree may change in place: t itself
+     * if the tree owns it, else a copy owned by the tree, which the caller
+     * must link in place of t. Nodes shared with another tree are never
+     * changed, so that tree keeps seeing its own items.
+     */
+    private BinaryNode<AnyType> own(BinaryNode<AnyType> t) {
+        if (t == null || t.owner == owner)
+            return t;
+        BinaryNode<AnyType> c = new BinaryNode<>(t.element, t.left, t.right, owner);
+        c.prefix = t.prefix;
+        c.height = t.height;
+        c.size = t.size;
+        return c;
+    }
+
+    /**
+     * Internal method to make the first depth nodes of the recorded search
+     * path owned by this tree before they are changed, copying shared nodes
+     * from the top down and linking each copy into its parent.
+     * @param depth The number of nodes on the path.
+     */
+    private void ownPath(int depth) {
+        path[0] = own(path[0]);
+        for (int i = 1; i < depth; i++) {
+            BinaryNode<AnyType> c = own(path[i]);
+            if (c != path[i]) {
+                BinaryNode<AnyType> p = path[i - 1];
+                if (p.left == path[i])
+                    p.left = c;
+                else
+                    p.right = c;
+                path[i] = c;
+            }
+        }
+    }
+
+    /**
+     * Internal method to make the nodes from the root down to x, and their
+     * children, owned by this tree before a manual rotation near x.
+     * @param x The item whose search path is about to change.
+     */
+    private void ownPathTo(AnyType x) {
+        root = own(root);
+        long key = prefix(x);
+        BinaryNode<AnyType> r = root;
+        while (r != null) {
+            r.left = own(r.left);
+            r.right = own(r.right);
+            int compareResult = compare(x, key, r);
+            if (compareResult == 0)
+                return;
+            r = (compareResult < 0) ? r.left : r.right;
+        }
+    }
+
+    /**
+     * Internal method to walk back up a recorded search path after its
+     * deepest node changed, refreshing heights and rebalancing each ancestor.
+     * @param depth The number of nodes on the path.
+     * @return the new root of the subtree the path started at.
+     */
+    private BinaryNode<AnyType> retrace(int depth) {
+        BinaryNode<AnyType> child = path[--depth];
+        path[depth] = null;
+        BinaryNode<AnyType> t = balance(child);
+        while (depth > 0) {
+            BinaryNode<AnyType> p = path[--depth];
+            path[depth] = null;
+            if (p.left == child)
+                p.left = t;
+            else
+                p.right = t;
+            child = p;
+            t = balance(p);
+        }
+        return t;
+    }
+
+    /**
+     * Rotate binary tree node with left child.
+     * Update heights and sizes, then return new root.
+     * 
+     * @param k2 the node to rotate; must have a left child.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> rotateWithLeftChild(BinaryNode<AnyType> k2) {
+        k2 = own(k2);
+        BinaryNode<AnyType> k1 = own(k2.left);
+        k2.left = k1.right;
+        k1.right = k2;
+        k2.height = Math.max(height(k2.left), height(k2.right)) + 1;
+        k1.height = Math.max(height(k1.left), k2.height) + 1;
+        k1.size = k2.size;
+        k2.size = size(k2.left) + size(k2.right) + 1;
+        return k1;
+    }
+
+    /**
+     * Rotate binary tree node with right child.
+     * Update heights and sizes, then return new root.
+     * 
+     * @param k1 the node to rotate; must have a right child.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> rotateWithRightChild(BinaryNode<AnyType> k1) {
+        k1 = own(k1);
+        BinaryNode<AnyType> k2 = own(k1.right);
+        k1.right = k2.left;
+        k2.left = k1;
+        k1.height = Math.max(height(k1.left), height(k1.right)) + 1;
+        k2.height = Math.max(height(k2.right), k1.height) + 1;
+        k2.size = k1.size;
+        k1.size = size(k1.left) + size(k1.right) + 1;
+        return k2;
+    }
+
+    /**
+     * Double rotate binary tree node: first left child
+     * with its right child; then node k3 with new left child.
+     * 
+     * @param k3 the node to rotate.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> doubleWithLeftChild(BinaryNode<AnyType> k3) {
+        k3 = own(k3);
+        k3.left = rotateWithRightChild(k3.left);
+        return rotateWithLeftChild(k3);
+    }
+
+    /**
+     * Double rotate binary tree node: first right child
+     * with its left child; then node k1 with new right child.
+     * 
+     * @param k1 the node to rotate.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> doubleWithRightChild(BinaryNode<AnyType> k1) {
+        k1 = own(k1);
+        k1.right = rotateWithLeftChild(k1.right);
+        return rotateWithRightChild(k1);
+    }
+
+    /**
+     * Internal method to restore the cached height and size of a subtree root
+     * and, in AVL mode, to rebalance it.
+     * Assumes t is either balanced or within one of being balanced.
+     * 
+     * @param t the node that roots the subtree.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> balance(BinaryNode<AnyType> t) {
+        if (t == null)
+            return t;
+        t = own(t);
+        if (mode == Mode.AVL) {
+            if (height(t.left) - height(t.right) > ALLOWED_IMBALANCE)
+                if (height(t.left.left) >= height(t.left.right))
+                    t = rotateWithLeftChild(t);
+                else
+                    t = doubleWithLeftChild(t);
+            else if (height(t.right) - height(t.left) > ALLOWED_IMBALANCE)
+                if (height(t.right.right) >= height(t.right.left))
+                    t = rotateWithRightChild(t);
+                else
+                    t = doubleWithRightChild(t);
+        }
+        t.height = Math.max(height(t.left), height(t.right)) + 1;
+        t.size = size(t.left) + size(t.right) + 1;
+        return t;
     }
 
     /**
@@ -243,18 +933,22 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
      * @return x's Parent node.
      */
     private BinaryNode<AnyType> findParent(BinaryNode<AnyType> t, AnyType x) {
-        if (t == null)
-            throw new NoSuchElementException("This tree does not contain " + x);
-        int compareResult = x.compareTo(t.element);
-        if (t.left != null && t.left.element.equals(x))
-            return t;
-        if (t.right != null && t.right.element.equals(x))
-            return t;
-        if (compareResult < 0)
-            t = findParent(t.left, x);
-        else if (compareResult > 0)
-            t = findParent(t.right, x);
-        return t;
+        long key = prefix(x);
+        while (true) {
+            if (t == null)
+                throw new NoSuchElementException("This tree does not contain " + x);
+            int compareResult = compare(x, key, t);
+            if (compareResult < 0 && t.left != null && compare(x, key, t.left) == 0)
+                return t;
+            if (compareResult > 0 && t.right != null && compare(x, key, t.right) == 0)
+                return t;
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0)
+                t = t.right;
+            else
+                return t;
+        }
     }
 
     /**
@@ -263,35 +957,62 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     public void printLevels() {
         if (isEmpty())
             throw new UnderflowException();
-        Queue<BinaryNode<AnyType>> qu = new LinkedList<>();
-        BinaryNode<AnyType> x;
-        qu.add(root);
-        qu.add(null);
-        while (true) {
-            x = qu.remove();
-            if (x != null) {
-                System.out.print(x.element + " ");
+        PrintBuffer out = new PrintBuffer(System.out);
+        try {
+            writeLevels(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by PrintBuffer
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the tree level-by-level, one line per level with each item
+     * followed by a space, as printLevels prints it. Levels are told apart
+     * by counting, so the queue holds nodes only: the rest of the current
+     * level and the children queued so far, at most two levels' worth. Pass
+     * a buffered Appendable for large trees.
+     * 
+     * @param out where to write.
+     * @throws IOException if out does.
+     */
+    public void writeLevels(Appendable out) throws IOException {
+        if (root == null)
+            return;
+        ArrayDeque<BinaryNode<AnyType>> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            for (int n = queue.size(); n > 0; n--) {
+                BinaryNode<AnyType> x = queue.poll();
+                out.append(String.valueOf(x.element)).append(' ');
                 if (x.left != null)
-                    qu.add(x.left);
+                    queue.add(x.left);
                 if (x.right != null)
-                    qu.add(x.right);
-            } else {
-                System.out.println();
-                if (!qu.isEmpty())
-                    qu.add(null);
-                else
-                    break;
+                    queue.add(x.right);
             }
+            out.append(System.lineSeparator());
         }
     }
 
+    /**
+     * Returns a sequential stream of the items in level order: the root,
+     * then its children from left to right, and so on.
+     */
+    public Stream<AnyType> levelOrder() {
+        return StreamSupport.stream(Spliterators.spliterator(new LevelIterator(), size(root),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
     /**
      * Insert into the tree; duplicates are ignored.
      * 
      * @param x the item to insert.
      */
     public void insert(AnyType x) {
+        int size = size(root);
         root = insert(x, root);
+        if (size(root) != size)
+            modCount++;
     }
 
     /**
@@ -300,7 +1021,10 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
      * @param x the item to remove.
      */
     public void remove(AnyType x) {
+        int size = size(root);
         root = remove(x, root);
+        if (size(root) != size)
+            modCount++;
     }
 
     /**
@@ -311,7 +1035,7 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     public AnyType findMin() {
         if (isEmpty())
             throw new UnderflowException();
-        return findMin(root).element;
+        return end(true).element;
     }
 
     /**
@@ -322,7 +1046,24 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
     public AnyType findMax() {
         if (isEmpty())
             throw new UnderflowException();
-        return findMax(root).element;
+        return end(false).element;
+    }
+
+    /**
+     * Internal method to find the node of the smallest or largest item of a
+     * non-empty tree, splaying it to the root in splay mode.
+     * 
+     * @param smallest true for the smallest item, false for the largest.
+     * @return the node.
+     */
+    private BinaryNode<AnyType> end(boolean smallest) {
+        if (mode != Mode.SPLAY)
+            return smallest ? findMin(root) : findMax(root);
+        int depth = 0;
+        for (BinaryNode<AnyType> t = root; t != null; t = smallest ? t.left : t.right)
+            push(depth++, t);
+        root = splay(depth);
+        return root;
     }
 
     /**
@@ -332,185 +1073,2270 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
      * @return true if not found.
      */
     public boolean contains(AnyType x) {
-        return contains(x, root);
+        if (mode == Mode.SPLAY)
+            return splayContains(x);
+        if (lookupCache != null)
+            return cachedContains(x);
+        return lookup(x);
     }
 
     /**
-     * Make the tree logically empty.
+     * Inserts a batch of items; duplicates are ignored. The batch is sorted
+     * and merged with the tree in one descent that splits it at each node
+     * and skips subtrees it has no items for. New items that land in the
+     * same empty subtree are built into a balanced subtree, and in AVL mode
+     * each node is rejoined with its updated children so the tree stays
+     * balanced. The array is not modified.
+     * 
+     * @param items the items to insert.
+     * @return the number of items that were not already present.
+     */
+    public int insertEach(AnyType[] items) {
+        return merge(items, true);
+    }
+
+    /**
+     * Removes a batch of items, in one descent as for insertEach. Items not
+     * in the tree are ignored. The array is not modified.
+     * 
+     * @param items the items to remove.
+     * @return the number of items that were removed.
+     */
+    public int removeEach(AnyType[] items) {
+        return merge(items, false);
+    }
+
+    /**
+     * Looks up a batch of items in one descent, visiting each node at most
+     * once. The array is not modified.
+     * 
+     * @param items the items to search for.
+     * @return a set with bit i set if items[i] is present.
+     */
+    public BitSet containsEach(AnyType[] items) {
+        BitSet found = new BitSet(items.length);
+        if (items.length == 0 || root == null)
+            return found;
+        Integer[] order = new Integer[items.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (i, j) -> compare(items[i], items[j]));
+        AnyType[] keys = items.clone();
+        for (int i = 0; i < order.length; i++)
+            keys[i] = items[order[i]];
+
+        Deque<Batch<AnyType>> stack = new ArrayDeque<>();
+        stack.push(new Batch<>(root, 0, keys.length));
+        while (!stack.isEmpty()) {
+            Batch<AnyType> b = stack.pop();
+            BinaryNode<AnyType> t = b.node;
+            int mid = lowerBound(keys, b.lo, b.hi, t.element);
+            int end = mid;
+            while (end < b.hi && compare(keys[end], t.element) == 0)
+                found.set(order[end++]); // Match
+            if (t.left != null && b.lo < mid)
+                stack.push(new Batch<>(t.left, b.lo, mid));
+            if (t.right != null && end < b.hi)
+                stack.push(new Batch<>(t.right, end, b.hi));
+        }
+        return found;
+    }
+
+    /**
+     * Returns a new tree holding the items of this tree, the specified
+     * tree, or both. Neither tree is changed. When both are AVL trees the
+     * result is built by split and join in O(m log(n/m + 1)) for trees of
+     * m <= n items, sharing unchanged subtrees with the inputs, and large
+     * inputs are combined in parallel; otherwise the two trees are merged
+     * in order in O(m + n).
+     * 
+     * @param x the other tree.
+     * @return the union, in the balancing mode of this tree.
+     */
+    public BinarySearchTree<AnyType> union(BinarySearchTree<AnyType> x) {
+        return combine(x, SetOp.UNION);
+    }
+
+    /**
+     * Returns a new tree holding the items found in both this tree and the
+     * specified tree; otherwise as union.
+     * 
+     * @param x the other tree.
+     * @return the intersection, in the balancing mode of this tree.
+     */
+    public BinarySearchTree<AnyType> intersection(BinarySearchTree<AnyType> x) {
+        return combine(x, SetOp.INTERSECTION);
+    }
+
+    /**
+     * Returns a new tree holding the items of this tree that are not in the
+     * specified tree; otherwise as union.
+     * 
+     * @param x the other tree.
+     * @return the difference, in the balancing mode of this tree.
+     */
+    public BinarySearchTree<AnyType> difference(BinarySearchTree<AnyType> x) {
+        return combine(x, SetOp.DIFFERENCE);
+    }
+
+    /**
+     * Make the tree logically empty.
      */
     public void makeEmpty() {
         root = null;
+        modCount++;
+        dropFinger();
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     * 
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        if (isEmpty())
+            System.out.println("Empty tree");
+        else {
+            PrintBuffer out = new PrintBuffer(System.out);
+            try {
+                writeTree(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // not thrown by PrintBuffer
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the tree contents in sorted order, each item followed by a
+     * space, as printTree prints them.
+     * 
+     * @param out where to write.
+     * @throws IOException if out does.
+     */
+    public void writeTree(Appendable out) throws IOException {
+        Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>();
+        BinaryNode<AnyType> t = root;
+        while (t != null || !stack.isEmpty()) {
+            while (t != null) {
+                stack.push(t);
+                t = t.left;
+            }
+            t = stack.pop();
+            out.append(String.valueOf(t.element)).append(' ');
+            t = t.right;
+        }
+    }
+
+    /**
+     * Returns an iterator over the items in sorted order.
+     * The iterator holds only the path to the next item, so it uses O(h)
+     * memory. It fails fast if the tree is modified other than through
+     * its own remove method.
+     */
+    @Override
+    public Iterator<AnyType> iterator() {
+        return new TreeIterator(null, false);
+    }
+
+    /**
+     * Returns a spliterator over the items in sorted order.
+     * It splits on subtree boundaries and reports exact sizes from the
+     * cached subtree sizes, so parallel streams need no intermediate copy.
+     */
+    @Override
+    public Spliterator<AnyType> spliterator() {
+        return new TreeSpliterator(root);
+    }
+
+    /**
+     * Returns a sequential stream of the items in sorted order.
+     * Call parallel() on it to process subtrees on several threads.
+     */
+    @Override
+    public Stream<AnyType> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Starts collecting metrics, or returns the metrics already being
+     * collected. Only operations from this point on are counted.
+     * 
+     * @return the live metrics of this tree.
+     */
+    public Metrics enableMetrics() {
+        if (metrics == null)
+            metrics = new Metrics();
+        return metrics;
+    }
+
+    /**
+     * Stops collecting metrics. With metrics off, insert, remove and
+     * contains pay a single untaken branch each and no per-node work.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Returns the metrics being collected, or null if they are off.
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Puts a cache of recent contains results in front of the tree, so a
+     * key asked for again costs one hash and one comparison. The cache is
+     * direct-mapped by hashCode, keeps negative results too, and is dropped
+     * as a whole by any change to the tree, rotations included. With the
+     * cache on, contains writes to the tree and must not run concurrently
+     * with other reads. Ignored in splay mode, which already keeps recent
+     * items at the root.
+     * 
+     * @param capacity the number of results kept, rounded up to a power of two.
+     * @throws IllegalArgumentException if capacity is less than 1 or more than 2^30.
+     */
+    public void enableLookupCache(int capacity) {
+        if (capacity < 1 || capacity > MAXIMUM_CACHE_CAPACITY)
+            throw new IllegalArgumentException("Lookup cache capacity must be between 1 and "
+                    + MAXIMUM_CACHE_CAPACITY + " but was " + capacity);
+        lookupCache = new LookupCache<>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    /**
+     * Removes the lookup cache.
+     */
+    public void disableLookupCache() {
+        lookupCache = null;
+    }
+
+    /**
+     * Makes contains start from the search path of the previous contains
+     * instead of from the root. The search climbs the path only as far as
+     * the first subtree whose range holds the key, so a key near the last
+     * one costs a few comparisons rather than a full descent, and a key far
+     * from it costs at most about twice as many. The path is forgotten on
+     * any change to the tree. As with the lookup cache, contains then
+     * writes to the tree; ignored in splay mode.
+     */
+    @SuppressWarnings("unchecked")
+    public void enableFingerSearch() {
+        if (finger == null) {
+            finger = (BinaryNode<AnyType>[]) new BinaryNode<?>[INITIAL_PATH_LENGTH];
+            fingerLeft = new boolean[INITIAL_PATH_LENGTH];
+        }
+    }
+
+    /**
+     * Stops finger search; contains starts from the root again.
+     */
+    public void disableFingerSearch() {
+        finger = null;
+        fingerLeft = null;
+        fingerDepth = 0;
+    }
+
+    /**
+     * Returns the number of items in the tree; the same as nodeCount().
+     */
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Inserts x, reporting whether the tree changed.
+     * 
+     * @param x the item to insert.
+     * @return true if x was not already present.
+     */
+    @Override
+    public boolean add(AnyType x) {
+        int size = size(root);
+        insert(x);
+        return size(root) != size;
+    }
+
+    /**
+     * Find an item in the tree.
+     * 
+     * @throws ClassCastException if o cannot be compared with the items in the tree.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return contains((AnyType) o);
+    }
+
+    /**
+     * Removes an item, reporting whether the tree changed.
+     * 
+     * @throws ClassCastException if o cannot be compared with the items in the tree.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        int size = size(root);
+        remove((AnyType) o);
+        return size(root) != size;
+    }
+
+    /**
+     * Make the tree logically empty; the same as makeEmpty().
+     */
+    @Override
+    public void clear() {
+        makeEmpty();
+    }
+
+    /**
+     * Returns the comparator ordering the items, or null if the tree uses
+     * their natural ordering.
+     */
+    @Override
+    public Comparator<? super AnyType> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Internal method to compare two items in the order of the tree.
+     */
+    private int compare(AnyType x, AnyType y) {
+        return compare(comparator, x, y);
+    }
+
+    /**
+     * Internal method to compare two items by a comparator, or by their
+     * natural ordering if it is null.
+     */
+    private static <AnyType extends Comparable<? super AnyType>> int compare(Comparator<? super AnyType> c,
+            AnyType x, AnyType y) {
+        return (c == null) ? x.compareTo(y) : c.compare(x, y);
+    }
+
+    /**
+     * Internal method to compare an item with the item of a node, deciding
+     * on the key prefixes where they differ. Without a prefix function both
+     * prefixes are 0, so the items are always compared.
+     * 
+     * @param x the item.
+     * @param key the key prefix of x.
+     * @param t the node.
+     */
+    private int compare(AnyType x, long key, BinaryNode<AnyType> t) {
+        if (key != t.prefix)
+            return Long.compareUnsigned(key, t.prefix);
+        return compare(x, t.element);
+    }
+
+    /**
+     * Internal method to get the key prefix of an item, or 0 if the tree
+     * keeps none.
+     */
+    private long prefix(AnyType x) {
+        return (prefix == null) ? 0 : prefix.applyAsLong(x);
+    }
+
+    /**
+     * Internal method to create an empty tree with the same balancing mode
+     * and ordering as this one.
+     */
+    private BinarySearchTree<AnyType> newTree() {
+        return new BinarySearchTree<>(mode, comparator, prefix);
+    }
+
+    /**
+     * Internal method to check that another tree orders its items the same
+     * way, so that their nodes can be mixed.
+     * 
+     * @throws IllegalArgumentException if the orderings differ.
+     */
+    private void checkOrdering(BinarySearchTree<AnyType> x) {
+        if (x.comparator != comparator || x.prefix != prefix)
+            throw new IllegalArgumentException("The trees are ordered differently");
+    }
+
+    /**
+     * Returns the smallest item.
+     * 
+     * @throws NoSuchElementException if the tree is empty.
+     */
+    @Override
+    public AnyType first() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return end(true).element;
+    }
+
+    /**
+     * Returns the largest item.
+     * 
+     * @throws NoSuchElementException if the tree is empty.
+     */
+    @Override
+    public AnyType last() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return end(false).element;
+    }
+
+    /**
+     * Returns the largest item smaller than x, or null if there is none.
+     */
+    @Override
+    public AnyType lower(AnyType x) {
+        return elementOf(floorNode(x, false));
+    }
+
+    /**
+     * Returns the largest item no greater than x, or null if there is none.
+     */
+    @Override
+    public AnyType floor(AnyType x) {
+        return elementOf(floorNode(x, true));
+    }
+
+    /**
+     * Returns the smallest item no less than x, or null if there is none.
+     */
+    @Override
+    public AnyType ceiling(AnyType x) {
+        return elementOf(ceilingNode(x, true));
+    }
+
+    /**
+     * Returns the smallest item greater than x, or null if there is none.
+     */
+    @Override
+    public AnyType higher(AnyType x) {
+        return elementOf(ceilingNode(x, false));
+    }
+
+    /**
+     * Removes and returns the smallest item, or returns null if empty.
+     */
+    @Override
+    public AnyType pollFirst() {
+        if (isEmpty())
+            return null;
+        AnyType x = end(true).element;
+        remove(x);
+        return x;
+    }
+
+    /**
+     * Removes and returns the largest item, or returns null if empty.
+     */
+    @Override
+    public AnyType pollLast() {
+        if (isEmpty())
+            return null;
+        AnyType x = end(false).element;
+        remove(x);
+        return x;
+    }
+
+    /**
+     * Returns an iterator over the items in descending order.
+     */
+    @Override
+    public Iterator<AnyType> descendingIterator() {
+        return new TreeIterator(null, true);
+    }
+
+    /**
+     * Returns a live view of the items in descending order.
+     */
+    @Override
+    public NavigableSet<AnyType> descendingSet() {
+        return new SubSet(true, null, true, true, null, true, true);
+    }
+
+    /**
+     * Returns a live view of the items between from and to.
+     * Operations on the view only visit nodes inside its range.
+     */
+    @Override
+    public NavigableSet<AnyType> subSet(AnyType from, boolean fromInclusive, AnyType to, boolean toInclusive) {
+        return new SubSet(false, from, fromInclusive, false, to, toInclusive, false);
+    }
+
+    /**
+     * Returns a live view of the items smaller than (or equal to, if inclusive) to.
+     */
+    @Override
+    public NavigableSet<AnyType> headSet(AnyType to, boolean inclusive) {
+        return new SubSet(true, null, true, false, to, inclusive, false);
+    }
+
+    /**
+     * Returns a live view of the items greater than (or equal to, if inclusive) from.
+     */
+    @Override
+    public NavigableSet<AnyType> tailSet(AnyType from, boolean inclusive) {
+        return new SubSet(false, from, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<AnyType> subSet(AnyType from, AnyType to) {
+        return subSet(from, true, to, false);
+    }
+
+    @Override
+    public SortedSet<AnyType> headSet(AnyType to) {
+        return headSet(to, false);
+    }
+
+    @Override
+    public SortedSet<AnyType> tailSet(AnyType from) {
+        return tailSet(from, true);
+    }
+
+    /**
+     * Internal method to find the smallest node no less than x, or greater
+     * than x if not inclusive. In splay mode the last node reached is
+     * splayed to the root.
+     * 
+     * @return the node, or null if there is none.
+     */
+    private BinaryNode<AnyType> ceilingNode(AnyType x, boolean inclusive) {
+        BinaryNode<AnyType> best = null;
+        long key = prefix(x);
+        int depth = 0;
+        BinaryNode<AnyType> t = root;
+        while (t != null) {
+            if (mode == Mode.SPLAY)
+                push(depth++, t);
+            int compareResult = compare(x, key, t);
+            if (compareResult < 0 || (compareResult == 0 && inclusive)) {
+                best = t;
+                t = (compareResult == 0) ? null : t.left;
+            } else
+                t = t.right;
+        }
+        if (depth > 0)
+            root = splay(depth);
+        return best;
+    }
+
+    /**
+     * Internal method to find the largest node no greater than x, or smaller
+     * than x if not inclusive. In splay mode the last node reached is
+     * splayed to the root.
+     * 
+     * @return the node, or null if there is none.
+     */
+    private BinaryNode<AnyType> floorNode(AnyType x, boolean inclusive) {
+        BinaryNode<AnyType> best = null;
+        long key = prefix(x);
+        int depth = 0;
+        BinaryNode<AnyType> t = root;
+        while (t != null) {
+            if (mode == Mode.SPLAY)
+                push(depth++, t);
+            int compareResult = compare(x, key, t);
+            if (compareResult > 0 || (compareResult == 0 && inclusive)) {
+                best = t;
+                t = (compareResult == 0) ? null : t.right;
+            } else
+                t = t.left;
+        }
+        if (depth > 0)
+            root = splay(depth);
+        return best;
+    }
+
+    /**
+     * Internal method to return the item of a node, or null for no node.
+     */
+    private AnyType elementOf(BinaryNode<AnyType> t) {
+        return (t == null) ? null : t.element;
+    }
+
+    /**
+     * Internal method to insert into a subtree.
+     * 
+     * @param x the item to insert.
+     * @param t the node that roots the subtree.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> insert(AnyType x, BinaryNode<AnyType> t) {
+        int depth = 0;
+        int compareResult = 0;
+        long key = prefix(x);
+        BinaryNode<AnyType> r = t;
+        while (r != null) {
+            compareResult = compare(x, key, r);
+            if (compareResult == 0)
+                break;
+            push(depth++, r);
+            r = (compareResult < 0) ? r.left : r.right;
+        }
+        if (metrics != null)
+            metrics.inserts.record(r == null ? depth : depth + 1);
+        if (r != null) {
+            if (mode == Mode.SPLAY) {
+                push(depth, r);
+                return splay(depth + 1);
+            }
+            if (depth > 0)
+                Arrays.fill(path, 0, depth, null);
+            return t; // Duplicate; do nothing
+        }
+        BinaryNode<AnyType> leaf = new BinaryNode<>(x, owner);
+        leaf.prefix = key;
+        if (t == null)
+            return leaf;
+
+        ownPath(depth);
+        BinaryNode<AnyType> parent = path[depth - 1];
+        if (compareResult < 0)
+            parent.left = leaf;
+        else
+            parent.right = leaf;
+        if (mode == Mode.SPLAY) {
+            for (int i = 0; i < depth; i++)
+                path[i].size++;
+            push(depth, leaf);
+            return splay(depth + 1);
+        }
+        return retrace(depth);
+    }
+
+    /**
+     * Internal method to find an item in a splay tree and splay the last
+     * node reached, the item or a neighbour of it, to the root.
+     * 
+     * @param x is item to search for.
+     * @return true if found.
+     */
+    private boolean splayContains(AnyType x) {
+        if (root == null) {
+            if (metrics != null)
+                metrics.lookups.record(0);
+            return false;
+        }
+        int depth = 0;
+        boolean found = false;
+        long key = prefix(x);
+        BinaryNode<AnyType> r = root;
+        while (true) {
+            push(depth++, r);
+            int compareResult = compare(x, key, r);
+            if (compareResult == 0) {
+                found = true; // Match
+                break;
+            }
+            BinaryNode<AnyType> next = (compareResult < 0) ? r.left : r.right;
+            if (next == null)
+                break;
+            r = next;
+        }
+        if (metrics != null)
+            metrics.lookups.record(depth);
+        root = splay(depth);
+        return found;
+    }
+
+    /**
+     * Internal method to splay the last node of a recorded search path to
+     * the top of the subtree the path started at. Each step rotates the
+     * node with its parent and grandparent: twice the same way when both
+     * links point the same way (zig-zig), otherwise as a double rotation
+     * (zig-zag), and once with a lone parent at the top (zig). Rotations
+     * work on the node handles recorded on the path, so no searches are
+     * repeated; every node on the path takes part in a rotation, which
+     * brings its cached height up to date.
+     * 
+     * @param depth The number of nodes on the path, including the node to splay.
+     * @return the new root of the subtree, the splayed node.
+     */
+    private BinaryNode<AnyType> splay(int depth) {
+        ownPath(depth);
+        int i = depth - 1;
+        BinaryNode<AnyType> x = path[i];
+        if (i > 0)
+            splayCount++;
+        while (i > 0) {
+            BinaryNode<AnyType> p = path[i - 1];
+            BinaryNode<AnyType> top = p; // The node x takes the place of
+            if (i == 1) // zig
+                x = (p.left == x) ? rotateWithLeftChild(p) : rotateWithRightChild(p);
+            else {
+                BinaryNode<AnyType> g = path[i - 2];
+                top = g;
+                if (g.left == p)
+                    x = (p.left == x) ? rotateWithLeftChild(rotateWithLeftChild(g)) : doubleWithLeftChild(g);
+                else
+                    x = (p.right == x) ? rotateWithRightChild(rotateWithRightChild(g)) : doubleWithRightChild(g);
+            }
+            i -= (i == 1) ? 1 : 2;
+            if (i > 0) {
+                BinaryNode<AnyType> above = path[i - 1];
+                if (above.left == top)
+                    above.left = x;
+                else
+                    above.right = x;
+            }
+        }
+        Arrays.fill(path, 0, depth, null);
+        return x;
+    }
+
+    /**
+     * Internal method to remove from a subtree.
+     * 
+     * @param x the item to remove.
+     * @param t the node that roots the subtree.
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> remove(AnyType x, BinaryNode<AnyType> t) {
+        int depth = 0;
+        long key = prefix(x);
+        BinaryNode<AnyType> r = t;
+        while (r != null) {
+            int compareResult = compare(x, key, r);
+            if (compareResult == 0)
+                break;
+            push(depth++, r);
+            r = (compareResult < 0) ? r.left : r.right;
+        }
+        if (metrics != null)
+            metrics.removes.record(r == null ? depth : depth + 1);
+        if (r == null) {
+            if (mode == Mode.SPLAY && depth > 0)
+                return splay(depth); // Item not found; splay the last node reached
+            if (depth > 0)
+                Arrays.fill(path, 0, depth, null);
+            return t; // Item not found; do nothing
+        }
+
+        BinaryNode<AnyType> parent;
+        if (r.left != null && r.right != null) // Two children
+        {
+            int found = depth;
+            push(depth++, r);
+            BinaryNode<AnyType> min = r.right;
+            while (min.left != null) {
+                push(depth++, min);
+                min = min.left;
+            }
+            ownPath(depth);
+            r = path[found];
+            r.element = min.element;
+            r.prefix = min.prefix;
+            parent = path[depth - 1];
+            if (parent == r)
+                parent.right = min.right;
+            else
+                parent.left = min.right;
+        } else {
+            BinaryNode<AnyType> child = (r.left != null) ? r.left : r.right;
+            if (depth == 0)
+                return balance(child);
+            ownPath(depth);
+            parent = path[depth - 1];
+            if (parent.left == r)
+                parent.left = child;
+            else
+                parent.right = child;
+        }
+        if (mode == Mode.SPLAY) {
+            for (int i = depth - 1; i >= 0; i--)
+                balance(path[i]); // Refresh the cached heights and sizes, bottom up
+            return splay(depth); // Splay the removed node's parent
+        }
+        return retrace(depth);
+    }
+
+    /**
+     * Internal method to find the smallest item in a subtree.
+     * 
+     * @param t the node that roots the subtree.
+     * @return node containing the smallest item.
+     */
+    private BinaryNode<AnyType> findMin(BinaryNode<AnyType> t) {
+        if (t != null)
+            while (t.left != null)
+                t = t.left;
+        return t;
+    }
+
+    /**
+     * Internal method to find the largest item in a subtree.
+     * 
+     * @param t the node that roots the subtree.
+     * @return node containing the largest item.
+     */
+    private BinaryNode<AnyType> findMax(BinaryNode<AnyType> t) {
+        if (t != null)
+            while (t.right != null)
+                t = t.right;
+        return t;
+    }
+
+    /**
+     * Internal method to find an item in a subtree.
+     * 
+     * @param x is item to search for.
+     * @param t the node that roots the subtree.
+     * @return node containing the matched item.
+     */
+    private boolean contains(AnyType x, BinaryNode<AnyType> t) {
+        long key = prefix(x);
+        while (t != null) {
+            int compareResult = compare(x, key, t);
+
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0)
+                t = t.right;
+            else
+                return true; // Match
+        }
+        return false;
+    }
+
+    /**
+     * Internal method to find an item in a subtree while counting the nodes
+     * visited for the metrics. Kept apart from contains so that the loop
+     * run with metrics off carries no counter.
+     * 
+     * @param x is item to search for.
+     * @param t the node that roots the subtree.
+     * @return true if found.
+     */
+    private boolean containsCounted(AnyType x, BinaryNode<AnyType> t) {
+        int visited = 0;
+        boolean found = false;
+        long key = prefix(x);
+        while (t != null) {
+            visited++;
+            int compareResult = compare(x, key, t);
+
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0)
+                t = t.right;
+            else {
+                found = true; // Match
+                break;
+            }
+        }
+        metrics.lookups.record(visited);
+        return found;
+    }
+
+    /**
+     * Internal method to find an item through the lookup cache, filling the
+     * item's slot on a miss. A slot is only trusted if it was filled since
+     * the last change to the tree. A hit counts as one comparison in the
+     * metrics.
+     * 
+     * @param x is item to search for.
+     * @return true if found.
+     */
+    private boolean cachedContains(AnyType x) {
+        LookupCache<AnyType> cache = lookupCache;
+        int slot = cache.slot(x);
+        AnyType key = cache.keys[slot];
+        if (key != null && cache.stamps[slot] == modCount && compare(x, key) == 0) {
+            if (metrics != null)
+                metrics.lookups.record(1);
+            return cache.found[slot]; // Hit
+        }
+        boolean found = lookup(x);
+        cache.keys[slot] = x;
+        cache.found[slot] = found;
+        cache.stamps[slot] = modCount;
+        return found;
+    }
+
+    /**
+     * Internal method to find an item in the tree, by finger search if it
+     * is on.
+     */
+    private boolean lookup(AnyType x) {
+        if (finger != null)
+            return fingerContains(x);
+        return (metrics == null) ? contains(x, root) : containsCounted(x, root);
+    }
+
+    /**
+     * Internal method to find an item starting from the path of the last
+     * search. The path is climbed from its deepest node to the nearest
+     * ancestor whose subtree range holds x. A subtree's range is bounded by
+     * its nearest ancestors entered from the left and from the right, and
+     * each step up widens it on one side only, so every ancestor on the way
+     * costs at most one comparison and most cost none. The search then
+     * descends from that ancestor as usual, recording the new path.
+     * 
+     * @param x is item to search for.
+     * @return true if found.
+     */
+    private boolean fingerContains(AnyType x) {
+        int visited = 0;
+        int start = 0; // Level of the subtree the descent starts from
+        int previousDepth = fingerDepth;
+        long key = prefix(x);
+        if (fingerModCount == modCount && fingerDepth > 0) {
+            start = fingerDepth - 1;
+            boolean lowOk = false; // x is above the lower bound of the start subtree
+            boolean highOk = false; // x is below the upper bound of the start subtree
+            for (int i = start - 1; i >= 0 && !(lowOk && highOk); i--) {
+                BinaryNode<AnyType> p = finger[i];
+                boolean fromLeft = fingerLeft[i];
+                if (fromLeft ? highOk : lowOk)
+                    continue; // a nearer ancestor already bounds this side
+                visited++;
+                int compareResult = compare(x, key, p);
+                if (compareResult == 0) {
+                    fingerDepth = i + 1;
+                    Arrays.fill(finger, fingerDepth, previousDepth, null);
+                    if (metrics != null)
+                        metrics.lookups.record(visited);
+                    return true; // Match
+                }
+                if ((compareResult < 0) == fromLeft) { // x is on the side of the path
+                    if (fromLeft)
+                        highOk = true;
+                    else
+                        lowOk = true;
+                } else { // x is outside the child's subtree but inside p's
+                    start = i;
+                    lowOk = fromLeft;
+                    highOk = !fromLeft;
+                }
+            }
+        }
+        int depth = start;
+        boolean found = false;
+        BinaryNode<AnyType> t = (start == 0) ? root : finger[start];
+        while (t != null) {
+            if (depth == finger.length) {
+                finger = Arrays.copyOf(finger, depth * 2);
+                fingerLeft = Arrays.copyOf(fingerLeft, depth * 2);
+            }
+            finger[depth] = t;
+            visited++;
+            int compareResult = compare(x, key, t);
+
+            fingerLeft[depth++] = compareResult < 0;
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0)
+                t = t.right;
+            else {
+                found = true; // Match
+                break;
+            }
+        }
+        if (depth < previousDepth)
+            Arrays.fill(finger, depth, previousDepth, null);
+        fingerDepth = depth;
+        fingerModCount = modCount;
+        if (metrics != null)
+            metrics.lookups.record(visited);
+        return found;
+    }
+
+    /**
+     * Internal method to forget the finger search path, so that it holds
+     * no nodes of a discarded tree.
+     */
+    private void dropFinger() {
+        if (finger != null)
+            Arrays.fill(finger, 0, fingerDepth, null);
+        fingerDepth = 0;
+    }
+
+    /**
+     * Internal method to insert or remove a batch of items. The tree is
+     * walked in post-order with an explicit stack, as a degenerate tree can
+     * be too deep to recurse; each node gets the sorted keys falling in its
+     * range and is rejoined with its children once both are done.
+     * 
+     * @param items the items to insert or remove.
+     * @param insert true to insert, false to remove.
+     * @return the change in the number of items.
+     */
+    private int merge(AnyType[] items, boolean insert) {
+        AnyType[] keys = items.clone();
+        int n = sortDistinct(keys, comparator);
+        int size = size(root);
+        if (n == 0)
+            return 0;
+
+        Deque<Batch<AnyType>> stack = new ArrayDeque<>();
+        List<BinaryNode<AnyType>> done = new ArrayList<>(); // Finished subtrees, which may be null
+        stack.push(new Batch<>(root, 0, n));
+        while (!stack.isEmpty()) {
+            Batch<AnyType> b = stack.pop();
+            BinaryNode<AnyType> t = b.node;
+            if (b.split) { // both children are done
+                BinaryNode<AnyType> rt = done.remove(done.size() - 1);
+                BinaryNode<AnyType> lt = done.remove(done.size() - 1);
+                done.add(insert || !b.match ? join(lt, t, rt) : join(lt, rt));
+            } else if (b.lo == b.hi)
+                done.add(t); // No keys for this subtree; leave it alone
+            else if (t == null)
+                done.add(insert ? build(keys, b.lo, b.hi) : null);
+            else {
+                int mid = lowerBound(keys, b.lo, b.hi, t.element);
+                b.match = mid < b.hi && compare(keys[mid], t.element) == 0;
+                b.split = true;
+                stack.push(b);
+                stack.push(new Batch<>(t.right, b.match ? mid + 1 : mid, b.hi));
+                stack.push(new Batch<>(t.left, b.lo, mid));
+            }
+        }
+        root = done.get(0);
+        if (size(root) != size)
+            modCount++;
+        return Math.abs(size(root) - size);
+    }
+
+    /**
+     * Internal method to find the first of the sorted keys in a[lo..hi)
+     * that is not smaller than x.
+     */
+    private int lowerBound(AnyType[] a, int lo, int hi, AnyType x) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(a[mid], x) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Internal method to join two subtrees and a node k, where the items
+     * of lt are smaller than k's and those of rt larger, reusing k as the
+     * new node. In AVL mode subtrees of any heights are joined by descending
+     * the spine of the taller one, so the result is balanced; otherwise k
+     * simply adopts both.
+     * 
+     * @return the root of the joined subtree.
+     */
+    private BinaryNode<AnyType> join(BinaryNode<AnyType> lt, BinaryNode<AnyType> k, BinaryNode<AnyType> rt) {
+        if (mode == Mode.AVL) {
+            if (height(lt) - height(rt) > ALLOWED_IMBALANCE)
+                return joinRight(lt, k, rt);
+            if (height(rt) - height(lt) > ALLOWED_IMBALANCE)
+                return joinLeft(lt, k, rt);
+        }
+        k = own(k);
+        k.left = lt;
+        k.right = rt;
+        return balance(k);
+    }
+
+    /**
+     * Internal method to join when lt is the taller subtree: k and rt are
+     * hung off lt's right spine where the heights match, and the spine is
+     * rebalanced on the way back up. Recursion depth is the height difference.
+     */
+    private BinaryNode<AnyType> joinRight(BinaryNode<AnyType> lt, BinaryNode<AnyType> k, BinaryNode<AnyType> rt) {
+        lt = own(lt);
+        if (height(lt.right) - height(rt) > ALLOWED_IMBALANCE)
+            lt.right = joinRight(lt.right, k, rt);
+        else {
+            k = own(k);
+            k.left = lt.right;
+            k.right = rt;
+            lt.right = balance(k);
+        }
+        return balance(lt);
+    }
+
+    /**
+     * Internal method to join when rt is the taller subtree; mirrors joinRight.
+     */
+    private BinaryNode<AnyType> joinLeft(BinaryNode<AnyType> lt, BinaryNode<AnyType> k, BinaryNode<AnyType> rt) {
+        rt = own(rt);
+        if (height(rt.left) - height(lt) > ALLOWED_IMBALANCE)
+            rt.left = joinLeft(lt, k, rt.left);
+        else {
+            k = own(k);
+            k.left = lt;
+            k.right = rt.left;
+            rt.left = balance(k);
+        }
+        return balance(rt);
+    }
+
+    /**
+     * Internal method to compute a set operation into a new tree.
+     */
+    @SuppressWarnings("unchecked")
+    private BinarySearchTree<AnyType> combine(BinarySearchTree<AnyType> x, SetOp op) {
+        checkOrdering(x);
+        BinarySearchTree<AnyType> result = newTree();
+        result.parallelThreshold = parallelThreshold;
+        if (mode == Mode.AVL && x.mode == Mode.AVL) {
+            // The result may share nodes with either input, so neither may
+            // change those nodes in place any more
+            owner = new Object();
+            x.owner = new Object();
+            result.root = result.new SetOperation(op, root, x.root).invoke();
+            return result;
+        }
+        List<AnyType> items = new ArrayList<>();
+        Iterator<AnyType> a = iterator();
+        Iterator<AnyType> b = x.iterator();
+        AnyType p = a.hasNext() ? a.next() : null;
+        AnyType q = b.hasNext() ? b.next() : null;
+        while (p != null || q != null) {
+            int compareResult = (p == null) ? 1 : (q == null) ? -1 : compare(p, q);
+            if (compareResult <= 0 && (op == SetOp.UNION || (compareResult == 0) == (op == SetOp.INTERSECTION)))
+                items.add(p);
+            else if (compareResult > 0 && op == SetOp.UNION)
+                items.add(q);
+            if (compareResult <= 0)
+                p = a.hasNext() ? a.next() : null;
+            if (compareResult >= 0)
+                q = b.hasNext() ? b.next() : null;
+        }
+        result.root = result.build((AnyType[]) items.toArray(new Comparable<?>[items.size()]), 0, items.size());
+        return result;
+    }
+
+    /**
+     * Internal method to apply a set operation to two AVL subtrees on the
+     * current thread: t2 is split at the item of t1's root, the two halves
+     * are combined recursively, and the results are joined back together.
+     * Recursion depth is logarithmic.
+     * 
+     * @return the root of the combined subtree.
+     */
+    private BinaryNode<AnyType> combine(SetOp op, BinaryNode<AnyType> t1, BinaryNode<AnyType> t2) {
+        if (t1 == null || t2 == null)
+            return empty(op, t1, t2);
+        Split<AnyType> s = split(t2, t1.element);
+        return finish(op, t1, s.found, combine(op, t1.left, s.left), combine(op, t1.right, s.right));
+    }
+
+    /**
+     * Internal method to get the result of a set operation when one of the
+     * subtrees is empty.
+     */
+    private BinaryNode<AnyType> empty(SetOp op, BinaryNode<AnyType> t1, BinaryNode<AnyType> t2) {
+        if (op == SetOp.UNION)
+            return (t1 == null) ? t2 : t1;
+        return (op == SetOp.DIFFERENCE) ? t1 : null;
+    }
+
+    /**
+     * Internal method to join the combined halves of a set operation,
+     * keeping t1's root item if the operation calls for it.
+     * 
+     * @param found true if the other subtree held t1's root item.
+     */
+    private BinaryNode<AnyType> finish(SetOp op, BinaryNode<AnyType> t1, boolean found, BinaryNode<AnyType> lt,
+            BinaryNode<AnyType> rt) {
+        boolean keep = (op == SetOp.UNION) || (found == (op == SetOp.INTERSECTION));
+        return keep ? join(lt, t1, rt) : concat(lt, rt);
+    }
+
+    /**
+     * Internal method to split an AVL subtree at x without changing it.
+     * Nodes on the search path are copied and rejoined on either side.
+     * 
+     * @return the items smaller than x, whether x was present, and the larger items.
+     */
+    private Split<AnyType> split(BinaryNode<AnyType> t, AnyType x) {
+        if (t == null)
+            return new Split<>(null, false, null);
+        int compareResult = compare(x, t.element);
+
+        if (compareResult < 0) {
+            Split<AnyType> s = split(t.left, x);
+            return new Split<>(s.left, s.found, join(s.right, t, t.right));
+        } else if (compareResult > 0) {
+            Split<AnyType> s = split(t.right, x);
+            return new Split<>(join(t.left, t, s.left), s.found, s.right);
+        }
+        return new Split<>(t.left, true, t.right);
+    }
+
+    /**
+     * Internal method to join two AVL subtrees through the largest node of
+     * lt. Unlike join(lt, rt) it recurses instead of using the shared path
+     * buffer, so several threads can run it at once.
+     */
+    private BinaryNode<AnyType> concat(BinaryNode<AnyType> lt, BinaryNode<AnyType> rt) {
+        if (lt == null)
+            return rt;
+        if (rt == null)
+            return lt;
+        BinaryNode<AnyType> max = findMax(lt);
+        return join(removeMax(lt), max, rt);
+    }
+
+    /**
+     * Internal method to remove the largest node of an AVL subtree.
+     * 
+     * @return the new root of the subtree.
+     */
+    private BinaryNode<AnyType> removeMax(BinaryNode<AnyType> t) {
+        if (t.right == null)
+            return t.left;
+        return join(t.left, t, removeMax(t.right));
+    }
+
+    /**
+     * Internal method to join two subtrees, where the items of lt are
+     * smaller than those of rt, by detaching the smallest node of rt and
+     * joining through it.
+     * 
+     * @return the root of the joined subtree.
+     */
+    private BinaryNode<AnyType> join(BinaryNode<AnyType> lt, BinaryNode<AnyType> rt) {
+        if (lt == null)
+            return rt;
+        if (rt == null)
+            return lt;
+        int depth = 0;
+        BinaryNode<AnyType> min = rt;
+        while (min.left != null) {
+            push(depth++, min);
+            min = min.left;
+        }
+        if (depth == 0)
+            rt = min.right;
+        else {
+            ownPath(depth);
+            path[depth - 1].left = min.right;
+            rt = retrace(depth);
+        }
+        return join(lt, min, rt);
+    }
+
+    /**
+     * Return the height of node t, or -1, if null.
+     * 
+     * @param t the node that roots the subtree.
+     */
+    private int height(BinaryNode<AnyType> t) {
+        return t == null ? -1 : t.height;
+    }
+
+    /**
+     * Return the number of nodes in the subtree rooted at t, or 0, if null.
+     * 
+     * @param t the node that roots the subtree.
+     */
+    private int size(BinaryNode<AnyType> t) {
+        return t == null ? 0 : t.size;
+    }
+
+    // In-order iterator keeping the path to the next node on a stack,
+    // optionally limited to the range of a view and optionally descending
+    private class TreeIterator implements Iterator<AnyType> {
+        TreeIterator(SubSet range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public AnyType next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (splayCount != expectedSplayCount)
+                resync();
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+            BinaryNode<AnyType> t = stack.pop();
+            push(descending ? t.left : t.right);
+            trim();
+            previous = lastReturned = t.element;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            BinarySearchTree.this.remove(lastReturned);
+            expectedModCount = modCount;
+            // removal may move items between nodes, so find the successor again
+            resync();
+            lastReturned = null;
+        }
+
+        // Builds the stack so the next node is the first one of the iteration
+        private void start() {
+            if (range == null || (descending ? range.toEnd : range.fromStart))
+                push(root);
+            else if (descending)
+                seek(range.hi, range.hiInclusive);
+            else
+                seek(range.lo, range.loInclusive);
+            trim();
+        }
+
+        // Builds the stack again once its nodes may have moved, resuming after the last item returned
+        private void resync() {
+            stack.clear();
+            if (previous == null)
+                start();
+            else {
+                seek(previous, false);
+                trim();
+            }
+            expectedSplayCount = splayCount;
+        }
+
+        // Pushes the spine leading to the first node of a subtree in iteration order
+        private void push(BinaryNode<AnyType> t) {
+            for (; t != null; t = descending ? t.right : t.left)
+                stack.push(t);
+        }
+
+        // Builds the stack so the next node is the first one at or past x in iteration order
+        private void seek(AnyType x, boolean inclusive) {
+            BinaryNode<AnyType> t = root;
+            while (t != null) {
+                int compareResult = descending ? compare(t.element, x) : compare(x, t.element);
+                if (compareResult < 0 || (compareResult == 0 && inclusive)) {
+                    stack.push(t);
+                    t = (compareResult == 0) ? null : descending ? t.right : t.left;
+                } else
+                    t = descending ? t.left : t.right;
+            }
+        }
+
+        // Ends the iteration once the next node falls outside the view
+        private void trim() {
+            if (range != null && !stack.isEmpty()
+                    && (descending ? range.tooLow(stack.peek().element) : range.tooHigh(stack.peek().element)))
+                stack.clear();
+        }
+
+        private final SubSet range; // View limiting the iteration, or null for the whole tree
+        private final boolean descending; // True to iterate from largest to smallest
+        private final Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>(); // Path to the next node
+        private AnyType lastReturned; // Item to delete on remove
+        private AnyType previous; // Last item returned, even once removed; null before the first
+        private int expectedModCount = modCount;
+        private int expectedSplayCount = splayCount;
+    }
+
+    // Live view of the items in a key range, optionally in descending order.
+    // Bounds are kept in ascending terms; the descending flag only swaps
+    // the directions of the navigation methods.
+    private class SubSet extends AbstractSet<AnyType> implements NavigableSet<AnyType> {
+        SubSet(boolean fromStart, AnyType lo, boolean loInclusive, boolean toEnd, AnyType hi, boolean hiInclusive,
+                boolean descending) {
+            if (!fromStart && !toEnd && compare(lo, hi) > 0)
+                throw new IllegalArgumentException("fromKey > toKey");
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        @Override
+        public int size() {
+            int above = toEnd ? BinarySearchTree.this.size() : rank(hi, hiInclusive);
+            int below = fromStart ? 0 : rank(lo, !loInclusive);
+            return Math.max(above - below, 0);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return inRange((AnyType) o) && BinarySearchTree.this.contains((AnyType) o);
+        }
+
+        @Override
+        public boolean add(AnyType x) {
+            if (!inRange(x))
+                throw new IllegalArgumentException("key out of range");
+            return BinarySearchTree.this.add(x);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return inRange((AnyType) o) && BinarySearchTree.this.remove(o);
+        }
+
+        @Override
+        public Iterator<AnyType> iterator() {
+            return new TreeIterator(this, descending);
+        }
+
+        @Override
+        public Iterator<AnyType> descendingIterator() {
+            return new TreeIterator(this, !descending);
+        }
+
+        @Override
+        public Comparator<? super AnyType> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public AnyType first() {
+            BinaryNode<AnyType> t = descending ? highest() : lowest();
+            if (t == null)
+                throw new NoSuchElementException();
+            return t.element;
+        }
+
+        @Override
+        public AnyType last() {
+            BinaryNode<AnyType> t = descending ? lowest() : highest();
+            if (t == null)
+                throw new NoSuchElementException();
+            return t.element;
+        }
+
+        @Override
+        public AnyType lower(AnyType x) {
+            return elementOf(descending ? above(x, false) : below(x, false));
+        }
+
+        @Override
+        public AnyType floor(AnyType x) {
+            return elementOf(descending ? above(x, true) : below(x, true));
+        }
+
+        @Override
+        public AnyType ceiling(AnyType x) {
+            return elementOf(descending ? below(x, true) : above(x, true));
+        }
+
+        @Override
+        public AnyType higher(AnyType x) {
+            return elementOf(descending ? below(x, false) : above(x, false));
+        }
+
+        @Override
+        public AnyType pollFirst() {
+            BinaryNode<AnyType> t = descending ? highest() : lowest();
+            if (t == null)
+                return null;
+            AnyType x = t.element;
+            BinarySearchTree.this.remove(x);
+            return x;
+        }
+
+        @Override
+        public AnyType pollLast() {
+            BinaryNode<AnyType> t = descending ? lowest() : highest();
+            if (t == null)
+                return null;
+            AnyType x = t.element;
+            BinarySearchTree.this.remove(x);
+            return x;
+        }
+
+        @Override
+        public NavigableSet<AnyType> descendingSet() {
+            return new SubSet(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<AnyType> subSet(AnyType from, boolean fromInclusive, AnyType to, boolean toInclusive) {
+            if (!inRange(from, fromInclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (!inRange(to, toInclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            if (descending)
+                return new SubSet(false, to, toInclusive, false, from, fromInclusive, true);
+            return new SubSet(false, from, fromInclusive, false, to, toInclusive, false);
+        }
+
+        @Override
+        public NavigableSet<AnyType> headSet(AnyType to, boolean inclusive) {
+            if (!inRange(to, inclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            if (descending)
+                return new SubSet(false, to, inclusive, toEnd, hi, hiInclusive, true);
+            return new SubSet(fromStart, lo, loInclusive, false, to, inclusive, false);
+        }
+
+        @Override
+        public NavigableSet<AnyType> tailSet(AnyType from, boolean inclusive) {
+            if (!inRange(from, inclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (descending)
+                return new SubSet(fromStart, lo, loInclusive, false, from, inclusive, true);
+            return new SubSet(false, from, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedSet<AnyType> subSet(AnyType from, AnyType to) {
+            return subSet(from, true, to, false);
+        }
+
+        @Override
+        public SortedSet<AnyType> headSet(AnyType to) {
+            return headSet(to, false);
+        }
+
+        @Override
+        public SortedSet<AnyType> tailSet(AnyType from) {
+            return tailSet(from, true);
+        }
+
+        boolean tooLow(AnyType x) {
+            if (fromStart)
+                return false;
+            int compareResult = compare(x, lo);
+            return compareResult < 0 || (compareResult == 0 && !loInclusive);
+        }
+
+        boolean tooHigh(AnyType x) {
+            if (toEnd)
+                return false;
+            int compareResult = compare(x, hi);
+            return compareResult > 0 || (compareResult == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(AnyType x) {
+            return !tooLow(x) && !tooHigh(x);
+        }
+
+        // Accepts an excluded bound of this view as the excluded bound of a nested view
+        private boolean inRange(AnyType x, boolean inclusive) {
+            if (inclusive)
+                return inRange(x);
+            return (fromStart || compare(x, lo) >= 0) && (toEnd || compare(x, hi) <= 0);
+        }
+
+        // Smallest node in range
+        private BinaryNode<AnyType> lowest() {
+            BinaryNode<AnyType> t = fromStart ? findMin(root) : ceilingNode(lo, loInclusive);
+            return (t == null || tooHigh(t.element)) ? null : t;
+        }
+
+        // Largest node in range
+        private BinaryNode<AnyType> highest() {
+            BinaryNode<AnyType> t = toEnd ? findMax(root) : floorNode(hi, hiInclusive);
+            return (t == null || tooLow(t.element)) ? null : t;
+        }
+
+        // Smallest node in range no less than x, or greater than x if not inclusive
+        private BinaryNode<AnyType> above(AnyType x, boolean inclusive) {
+            if (tooLow(x))
+                return lowest();
+            BinaryNode<AnyType> t = ceilingNode(x, inclusive);
+            return (t == null || tooHigh(t.element)) ? null : t;
+        }
+
+        // Largest node in range no greater than x, or smaller than x if not inclusive
+        private BinaryNode<AnyType> below(AnyType x, boolean inclusive) {
+            if (tooHigh(x))
+                return highest();
+            BinaryNode<AnyType> t = floorNode(x, inclusive);
+            return (t == null || tooLow(t.element)) ? null : t;
+        }
+
+        final boolean fromStart; // True if the view has no lower bound
+        final AnyType lo; // Lower bound
+        final boolean loInclusive; // True if lo itself is in range
+        final boolean toEnd; // True if the view has no upper bound
+        final AnyType hi; // Upper bound
+        final boolean hiInclusive; // True if hi itself is in range
+        private final boolean descending; // True if the view is in descending order
     }
 
-    /**
-     * Test if the tree is logically empty.
-     * 
-     * @return true if empty, false otherwise.
-     */
-    public boolean isEmpty() {
-        return root == null;
+    // Spliterator over a sequence of pending entries kept on a stack. An entry
+    // stands either for a whole subtree or for a single node, and splitting
+    // hands the entries above the bottom one, i.e. the smaller items, to a new
+    // spliterator after expanding a lone subtree into left, node and right.
+    // The items still to come lie between two bounds, so after a splay has
+    // moved the nodes the entries can be built again from the root.
+    private class TreeSpliterator implements Spliterator<AnyType> {
+        TreeSpliterator(BinaryNode<AnyType> t) {
+            if (t != null)
+                push(t, true);
+        }
+
+        private TreeSpliterator(int expectedModCount) {
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super AnyType> action) {
+            Objects.requireNonNull(action);
+            resync();
+            while (top > 0) {
+                BinaryNode<AnyType> t = nodes[--top];
+                nodes[top] = null;
+                if (whole[top])
+                    expand(t);
+                else {
+                    if (modCount != expectedModCount)
+                        throw new ConcurrentModificationException();
+                    after = t.element;
+                    action.accept(t.element);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<AnyType> trySplit() {
+            resync();
+            if (top == 1 && whole[0] && nodes[0].size > 1) {
+                BinaryNode<AnyType> t = nodes[0];
+                nodes[0] = null;
+                top = 0;
+                expand(t);
+            }
+            if (top < 2)
+                return null;
+            TreeSpliterator prefix = new TreeSpliterator(expectedModCount);
+            prefix.after = after;
+            prefix.before = whole[0] ? findMin(nodes[0]).element : nodes[0].element;
+            after = whole[1] ? findMax(nodes[1]).element : nodes[1].element;
+            for (int i = 1; i < top; i++) {
+                prefix.push(nodes[i], whole[i]);
+                nodes[i] = null;
+            }
+            top = 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            resync();
+            long size = 0;
+            for (int i = 0; i < top; i++)
+                size += whole[i] ? nodes[i].size : 1;
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super AnyType> getComparator() {
+            return comparator;
+        }
+
+        // Rebuilds the entries from the root once a splay may have moved their nodes: the
+        // highest node between the bounds, with the parts of its subtrees that lie between them
+        private void resync() {
+            if (splayCount == expectedSplayCount)
+                return;
+            expectedSplayCount = splayCount;
+            if (top > 0)
+                Arrays.fill(nodes, 0, top, null);
+            top = 0;
+            BinaryNode<AnyType> t = root;
+            while (t != null && !((after == null || compare(t.element, after) > 0)
+                    && (before == null || compare(t.element, before) < 0)))
+                t = (after != null && compare(t.element, after) <= 0) ? t.right : t.left;
+            if (t == null)
+                return;
+            if (before == null) {
+                if (t.right != null)
+                    push(t.right, true);
+            } else { // each node below the bound and its left subtree, the largest pushed first
+                Deque<BinaryNode<AnyType>> spine = new ArrayDeque<>();
+                for (BinaryNode<AnyType> u = t.right; u != null;)
+                    if (compare(u.element, before) < 0) {
+                        spine.push(u);
+                        u = u.right;
+                    } else
+                        u = u.left;
+                while (!spine.isEmpty()) {
+                    BinaryNode<AnyType> u = spine.pop();
+                    push(u, false);
+                    if (u.left != null)
+                        push(u.left, true);
+                }
+            }
+            push(t, false);
+            for (BinaryNode<AnyType> u = t.left; u != null;) // each node above the bound and its right subtree
+                if (after == null) {
+                    push(u, true);
+                    break;
+                } else if (compare(u.element, after) > 0) {
+                    if (u.right != null)
+                        push(u.right, true);
+                    push(u, false);
+                    u = u.left;
+                } else
+                    u = u.right;
+        }
+
+        // Replaces a whole-subtree entry by its right subtree, the node itself and its left subtree
+        private void expand(BinaryNode<AnyType> t) {
+            if (t.right != null)
+                push(t.right, true);
+            push(t, false);
+            if (t.left != null)
+                push(t.left, true);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void push(BinaryNode<AnyType> t, boolean subtree) {
+            if (nodes == null) {
+                nodes = (BinaryNode<AnyType>[]) new BinaryNode<?>[INITIAL_PATH_LENGTH];
+                whole = new boolean[INITIAL_PATH_LENGTH];
+            } else if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                whole = Arrays.copyOf(whole, top * 2);
+            }
+            nodes[top] = t;
+            whole[top++] = subtree;
+        }
+
+        private BinaryNode<AnyType>[] nodes; // Pending entries, the next one on top
+        private boolean[] whole; // True if the entry stands for its whole subtree
+        private int top; // Number of pending entries
+        private AnyType after; // The items to come are above this one, or null if unbounded
+        private AnyType before; // The items to come are below this one, or null if unbounded
+        private int expectedModCount = modCount;
+        private int expectedSplayCount = splayCount;
     }
 
     /**
-     * Print the tree contents in sorted order.
+     * Metrics of one tree, read through the getters or over JMX once
+     * registered. insert, remove and contains make exactly one comparison
+     * per node they visit, counting one settled on key prefixes, so an
+     * operation's comparisons and its search path length are the same
+     * number; the histograms hold that number per call.
+     * Counters are plain fields written by the thread using the tree, so a
+     * JMX client may see slightly stale values. getNotFullFraction walks the
+     * whole tree and should only be read while the tree is not changing.
      */
-    public void printTree() {
-        if (isEmpty())
-            System.out.println("Empty tree");
-        else
-            printTree(root);
+    public class Metrics implements MetricsMXBean {
+        private Metrics() {
+        }
+
+        /**
+         * Registers these metrics with the platform MBean server.
+         * 
+         * @param name the value of the name key in the object name.
+         * @return the name the metrics were registered under.
+         * @throws JMException if the name is taken or invalid.
+         */
+        public ObjectName register(String name) throws JMException {
+            ObjectName objectName = new ObjectName("BinarySearchTree:type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        }
+
+        @Override
+        public long getContainsCalls() {
+            return lookups.calls;
+        }
+
+        @Override
+        public long getInsertCalls() {
+            return inserts.calls;
+        }
+
+        @Override
+        public long getRemoveCalls() {
+            return removes.calls;
+        }
+
+        @Override
+        public long getContainsComparisons() {
+            return lookups.comparisons;
+        }
+
+        @Override
+        public long getInsertComparisons() {
+            return inserts.comparisons;
+        }
+
+        @Override
+        public long getRemoveComparisons() {
+            return removes.comparisons;
+        }
+
+        @Override
+        public long[] getContainsPathLengths() {
+            return lookups.histogram.clone();
+        }
+
+        @Override
+        public long[] getInsertPathLengths() {
+            return inserts.histogram.clone();
+        }
+
+        @Override
+        public long[] getRemovePathLengths() {
+            return removes.histogram.clone();
+        }
+
+        @Override
+        public int getHeight() {
+            return height(root);
+        }
+
+        @Override
+        public int getSize() {
+            return size(root);
+        }
+
+        @Override
+        public double getNotFullFraction() {
+            BinaryNode<AnyType> r = root;
+            if (r == null)
+                return 0;
+            int notFull = 0;
+            Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>();
+            stack.push(r);
+            while (!stack.isEmpty()) {
+                r = stack.pop();
+                if ((r.left == null) != (r.right == null))
+                    notFull++; // exactly one child
+                if (r.left != null)
+                    stack.push(r.left);
+                if (r.right != null)
+                    stack.push(r.right);
+            }
+            return (double) notFull / size(root);
+        }
+
+        @Override
+        public void reset() {
+            lookups = new Counter();
+            inserts = new Counter();
+            removes = new Counter();
+        }
+
+        private Counter lookups = new Counter(); // contains
+        private Counter inserts = new Counter();
+        private Counter removes = new Counter();
     }
 
     /**
-     * Internal method to insert into a subtree.
-     * 
-     * @param x the item to insert.
-     * @param t the node that roots the subtree.
-     * @return the new root of the subtree.
+     * Management interface of the tree metrics.
      */
-    private BinaryNode<AnyType> insert(AnyType x, BinaryNode<AnyType> t) {
-        if (t == null)
-            return new BinaryNode<>(x, null, null);
+    public interface MetricsMXBean {
+        /** Number of contains calls counted. */
+        long getContainsCalls();
 
-        int compareResult = x.compareTo(t.element);
+        /** Number of insert calls counted, duplicates included. */
+        long getInsertCalls();
 
-        if (compareResult < 0)
-            t.left = insert(x, t.left);
-        else if (compareResult > 0)
-            t.right = insert(x, t.right);
-        else
-            ; // Duplicate; do nothing
-        return t;
+        /** Number of remove calls counted, misses included. */
+        long getRemoveCalls();
+
+        /** Total comparisons made by contains, one per node visited, including those settled on key prefixes. */
+        long getContainsComparisons();
+
+        /** Total comparisons made by insert, one per node visited, including those settled on key prefixes. */
+        long getInsertComparisons();
+
+        /** Total comparisons made by remove, one per node visited, including those settled on key prefixes. */
+        long getRemoveComparisons();
+
+        /** Calls of contains by path length; the last slot counts all longer paths. */
+        long[] getContainsPathLengths();
+
+        /** Calls of insert by path length; the last slot counts all longer paths. */
+        long[] getInsertPathLengths();
+
+        /** Calls of remove by path length; the last slot counts all longer paths. */
+        long[] getRemovePathLengths();
+
+        /** Current height of the tree, -1 if empty. */
+        int getHeight();
+
+        /** Current number of items. */
+        int getSize();
+
+        /** Fraction of nodes with exactly one child, the nodes that make isFull false. */
+        double getNotFullFraction();
+
+        /** Zeroes the operation counters. */
+        void reset();
     }
 
-    /**
-     * Internal method to remove from a subtree.
-     * 
-     * @param x the item to remove.
-     * @param t the node that roots the subtree.
-     * @return the new root of the subtree.
-     */
-    private BinaryNode<AnyType> remove(AnyType x, BinaryNode<AnyType> t) {
-        if (t == null)
-            return t; // Item not found; do nothing
+    // Level-order iterator over a queue holding at most one level of nodes
+    private class LevelIterator implements Iterator<AnyType> {
+        LevelIterator() {
+            if (root != null)
+                queue.add(root);
+        }
 
-        int compareResult = x.compareTo(t.element);
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
 
-        if (compareResult < 0)
-            t.left = remove(x, t.left);
-        else if (compareResult > 0)
-            t.right = remove(x, t.right);
-        else if (t.left != null && t.right != null) // Two children
-        {
-            t.element = findMin(t.right).element;
-            t.right = remove(t.element, t.right);
-        } else
-            t = (t.left != null) ? t.left : t.right;
-        return t;
+        @Override
+        public AnyType next() {
+            if (modCount != expectedModCount || splayCount != expectedSplayCount)
+                throw new ConcurrentModificationException(); // a splay changes the levels
+            BinaryNode<AnyType> x = queue.poll();
+            if (x == null)
+                throw new NoSuchElementException();
+            if (x.left != null)
+                queue.add(x.left);
+            if (x.right != null)
+                queue.add(x.right);
+            return x.element;
+        }
+
+        private final ArrayDeque<BinaryNode<AnyType>> queue = new ArrayDeque<>();
+        private final int expectedModCount = modCount;
+        private final int expectedSplayCount = splayCount;
     }
 
-    /**
-     * Internal method to find the smallest item in a subtree.
-     * 
-     * @param t the node that roots the subtree.
-     * @return node containing the smallest item.
-     */
-    private BinaryNode<AnyType> findMin(BinaryNode<AnyType> t) {
-        if (t == null)
-            return null;
-        else if (t.left == null)
-            return t;
-        return findMin(t.left);
+    // Appendable collecting text in a buffer and printing it in large chunks,
+    // so printing does not lock and encode once per item
+    private static class PrintBuffer implements Appendable {
+        PrintBuffer(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public PrintBuffer append(CharSequence csq) {
+            buf.append(csq);
+            if (buf.length() >= PRINT_BUFFER_SIZE)
+                flush();
+            return this;
+        }
+
+        @Override
+        public PrintBuffer append(CharSequence csq, int start, int end) {
+            return append(csq.subSequence(start, end));
+        }
+
+        @Override
+        public PrintBuffer append(char c) {
+            buf.append(c);
+            return this;
+        }
+
+        void flush() {
+            out.print(buf);
+            out.flush();
+            buf.setLength(0);
+        }
+
+        private final PrintStream out;
+        private final StringBuilder buf = new StringBuilder(PRINT_BUFFER_SIZE + 64);
     }
 
-    /**
-     * Internal method to find the largest item in a subtree.
-     * 
-     * @param t the node that roots the subtree.
-     * @return node containing the largest item.
-     */
-    private BinaryNode<AnyType> findMax(BinaryNode<AnyType> t) {
-        if (t != null)
-            while (t.right != null)
-                t = t.right;
-        return t;
+    // Checks a condition over a subtree, or over two subtrees walked together.
+    // Above the threshold the task checks the top node itself, forks the
+    // smaller half and carries on down the larger one, so a degenerate tree
+    // forks nothing and needs no deep recursion. The first failure sets the
+    // shared flag, and tasks that see it stop and report failure. Tasks are
+    // never serialized.
+    @SuppressWarnings("serial")
+    private class ParallelCheck extends RecursiveTask<Boolean> {
+        ParallelCheck(Check check, BinaryNode<AnyType> r1, BinaryNode<AnyType> r2, AtomicBoolean failed) {
+            this.check = check;
+            this.r1 = r1;
+            this.r2 = r2;
+            this.failed = failed;
+        }
+
+        @Override
+        protected Boolean compute() {
+            BinaryNode<AnyType> t1 = r1;
+            BinaryNode<AnyType> t2 = r2;
+            List<ParallelCheck> forked = new ArrayList<>();
+            boolean ok = true;
+            while (ok && size(t1) > parallelThreshold && !failed.get()) {
+                if (check != Check.FULL && t1 == t2)
+                    break; // the same nodes, as after snapshot(); nothing left to compare
+                ok = matches(t1, t2);
+                if (!ok)
+                    break;
+                boolean leftSmaller = size(t1.left) < size(t1.right);
+                BinaryNode<AnyType> s1 = leftSmaller ? t1.left : t1.right;
+                BinaryNode<AnyType> s2 = (t2 == null) ? null : leftSmaller ? t2.left : t2.right;
+                ParallelCheck task = new ParallelCheck(check, s1, s2, failed);
+                task.fork();
+                forked.add(task);
+                t1 = leftSmaller ? t1.right : t1.left;
+                t2 = (t2 == null) ? null : leftSmaller ? t2.right : t2.left;
+            }
+            if (ok && !failed.get() && !(check != Check.FULL && t1 == t2)) {
+                if (check == Check.FULL)
+                    ok = isFull(t1);
+                else if (check == Check.STRUCTURE)
+                    ok = compareStructure(t1, t2);
+                else
+                    ok = identical(t1, t2);
+            }
+            if (!ok)
+                failed.set(true);
+            for (ParallelCheck task : forked)
+                ok &= task.join();
+            return ok && !failed.get();
+        }
+
+        // Checks the top pair of nodes; t1 is not null
+        private boolean matches(BinaryNode<AnyType> t1, BinaryNode<AnyType> t2) {
+            if (check == Check.FULL)
+                return (t1.left == null) == (t1.right == null);
+            if (t2 == null || t1.size != t2.size) // matching trees have matching sizes
+                return false;
+            if ((t1.left == null) != (t2.left == null) || (t1.right == null) != (t2.right == null))
+                return false;
+            return check == Check.STRUCTURE || t1.element.equals(t2.element);
+        }
+
+        private final Check check;
+        private final BinaryNode<AnyType> r1;
+        private final BinaryNode<AnyType> r2; // Null for FULL
+        private final AtomicBoolean failed; // Set by the first task to find a mismatch
     }
 
-    /**
-     * Internal method to find an item in a subtree.
-     * 
-     * @param x is item to search for.
-     * @param t the node that roots the subtree.
-     * @return node containing the matched item.
-     */
-    private boolean contains(AnyType x, BinaryNode<AnyType> t) {
-        if (t == null)
-            return false;
+    private enum Check {
+        FULL, STRUCTURE, EQUAL
+    }
 
-        int compareResult = x.compareTo(t.element);
+    // Fills in the mirrored children of a clone, forking the smaller half
+    // above the threshold as ParallelCheck does
+    @SuppressWarnings("serial")
+    private class ParallelMirror extends RecursiveAction {
+        ParallelMirror(BinaryNode<AnyType> from, BinaryNode<AnyType> to) {
+            this.from = from;
+            this.to = to;
+        }
 
-        if (compareResult < 0)
-            return contains(x, t.left);
-        else if (compareResult > 0)
-            return contains(x, t.right);
-        else
-            return true; // Match
+        @Override
+        protected void compute() {
+            BinaryNode<AnyType> r = from;
+            BinaryNode<AnyType> c = to;
+            List<ParallelMirror> forked = new ArrayList<>();
+            while (size(r) > parallelThreshold) {
+                BinaryNode<AnyType> lt = (r.left == null) ? null : copyNode(r.left);
+                BinaryNode<AnyType> rt = (r.right == null) ? null : copyNode(r.right);
+                c.left = rt;
+                c.right = lt;
+                boolean leftSmaller = size(r.left) < size(r.right);
+                if (leftSmaller ? lt != null : rt != null) {
+                    ParallelMirror task = leftSmaller ? new ParallelMirror(r.left, lt) : new ParallelMirror(r.right, rt);
+                    task.fork();
+                    forked.add(task);
+                }
+                c = leftSmaller ? rt : lt;
+                r = leftSmaller ? r.right : r.left;
+            }
+            if (r != null)
+                copyChildren(r, c, true);
+            for (ParallelMirror task : forked)
+                task.join();
+        }
+
+        private final BinaryNode<AnyType> from;
+        private final BinaryNode<AnyType> to; // Clone of from, its children still unset
     }
 
-    /**
-     * Internal method to print a subtree in sorted order.
-     * 
-     * @param t the node that roots the subtree.
-     */
-    private void printTree(BinaryNode<AnyType> t) {
-        if (t != null) {
-            printTree(t.left);
-            System.out.print(t.element + " ");
-            printTree(t.right);
+    // Set operation on two AVL subtrees. The halves either side of t1's root
+    // are independent, so above the threshold one of them is forked while
+    // this thread works on the other. Tasks are never serialized.
+    @SuppressWarnings("serial")
+    private class SetOperation extends RecursiveTask<BinaryNode<AnyType>> {
+        SetOperation(SetOp op, BinaryNode<AnyType> t1, BinaryNode<AnyType> t2) {
+            this.op = op;
+            this.t1 = t1;
+            this.t2 = t2;
+        }
+
+        @Override
+        protected BinaryNode<AnyType> compute() {
+            if (size(t1) + size(t2) <= parallelThreshold)
+                return combine(op, t1, t2);
+            if (t1 == null || t2 == null)
+                return empty(op, t1, t2);
+            Split<AnyType> s = split(t2, t1.element);
+            SetOperation left = new SetOperation(op, t1.left, s.left);
+            left.fork();
+            BinaryNode<AnyType> rt = new SetOperation(op, t1.right, s.right).compute();
+            return finish(op, t1, s.found, left.join(), rt);
         }
+
+        private final SetOp op;
+        private final BinaryNode<AnyType> t1;
+        private final BinaryNode<AnyType> t2;
     }
 
-    /**
-     * Internal method to compute height of a subtree.
-     * 
-     * @param t the node that roots the subtree.
-     */
-    private int height(BinaryNode<AnyType> t) {
-        if (t == null)
-            return -1;
-        else
-            return 1 + Math.max(height(t.left), height(t.right));
+    private enum SetOp {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    // A subtree split at an item: the smaller items, whether the item was present, and the larger items
+    private static class Split<AnyType> {
+        Split(BinaryNode<AnyType> lt, boolean found, BinaryNode<AnyType> rt) {
+            left = lt;
+            this.found = found;
+            right = rt;
+        }
+
+        final BinaryNode<AnyType> left;
+        final boolean found;
+        final BinaryNode<AnyType> right;
+    }
+
+    // Pending step of a batch operation: a subtree and the range of sorted keys that fall in it
+    private static class Batch<AnyType> {
+        Batch(BinaryNode<AnyType> t, int lo, int hi) {
+            node = t;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        final BinaryNode<AnyType> node; // Root of the subtree, or null
+        final int lo; // Index of the first key for the subtree
+        final int hi; // One past the index of the last key
+        boolean split; // True once the keys are handed to the children
+        boolean match; // True if one of the keys equals the node's item
+    }
+
+    // Direct-mapped cache of contains results, each slot stamped with the modCount it was filled at
+    private static class LookupCache<AnyType extends Comparable<? super AnyType>> {
+        @SuppressWarnings("unchecked")
+        LookupCache(int capacity) {
+            keys = (AnyType[]) new Comparable<?>[capacity];
+            found = new boolean[capacity];
+            stamps = new int[capacity];
+        }
+
+        int slot(Object x) {
+            int h = x.hashCode();
+            return (h ^ (h >>> 16)) & (keys.length - 1);
+        }
+
+        final AnyType[] keys; // Item looked up, or null for an empty slot
+        final boolean[] found; // Result for the item
+        final int[] stamps; // modCount when the slot was filled
+    }
+
+    // Call count, comparison total and path length histogram of one operation
+    private static class Counter {
+        void record(int visited) {
+            calls++;
+            comparisons += visited;
+            histogram[Math.min(visited, HISTOGRAM_LENGTH - 1)]++;
+        }
+
+        long calls;
+        long comparisons;
+        final long[] histogram = new long[HISTOGRAM_LENGTH];
     }
 
-    // Basic node stored in unbalanced binary search trees
+    // Basic node stored in binary search trees
     private static class BinaryNode<AnyType> {
         // Constructors
-        BinaryNode(AnyType theElement) {
-            this(theElement, null, null);
+        BinaryNode(AnyType theElement, Object owner) {
+            this(theElement, null, null, owner);
         }
 
-        BinaryNode(AnyType theElement, BinaryNode<AnyType> lt, BinaryNode<AnyType> rt) {
+        BinaryNode(AnyType theElement, BinaryNode<AnyType> lt, BinaryNode<AnyType> rt, Object owner) {
             element = theElement;
             left = lt;
             right = rt;
+            size = 1;
+            this.owner = owner;
         }
 
         AnyType element; // The data in the node
         BinaryNode<AnyType> left; // Left child
         BinaryNode<AnyType> right; // Right child
+        int height; // Height of the subtree rooted here
+        int size; // Number of nodes in the subtree rooted here
+        long prefix; // Key prefix of the element, or 0 if the tree keeps none
+        final Object owner; // Token of the tree allowed to change the node in place
     }
 
-    /**
-     * Exception class for access in empty containers
-     * such as stacks, queues, and priority queues.
-     * @author Mark Allen Weiss
-     */
-    private static class UnderflowException extends RuntimeException {
-    }
+    private static final int ALLOWED_IMBALANCE = 1;
+    private static final int INITIAL_PATH_LENGTH = 64;
+    private static final int HISTOGRAM_LENGTH = 64;
+    private static final int PRINT_BUFFER_SIZE = 1 << 13;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 13;
+    private static final int MAXIMUM_CACHE_CAPACITY = 1 << 30;
 
     /** The tree root. */
     private BinaryNode<AnyType> root;
 
+    /** The balancing strategy chosen at construction. */
+    private final Mode mode;
+
+    /** The ordering of the items, or null for their natural ordering. */
+    private final Comparator<? super AnyType> comparator;
+
+    /** Computes the key prefix kept in each node, or null if nodes keep none. */
+    private final ToLongFunction<? super AnyType> prefix;
+
+    /** Count of structural modifications other than splays, checked by iterators. */
+    private int modCount;
+
+    /** Count of splays, which move nodes but keep the items; iterators find their place again. */
+    private int splayCount;
+
+    /** Reusable buffer holding the search path of the current insert or remove. */
+    private BinaryNode<AnyType>[] path;
+
+    /**
+     * Token marking the nodes this tree may change in place. Nodes carrying
+     * another token are shared with another tree and are copied first.
+     */
+    private Object owner = new Object();
+
+    /** Subtree size at or below which fork/join operations run sequentially. */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /** Metrics being collected, or null when they are off. */
+    private Metrics metrics;
+
+    /** Cache of recent contains results, or null when it is off. */
+    private LookupCache<AnyType> lookupCache;
+
+    /** Search path of the last contains from the root down, or null when finger search is off. */
+    private BinaryNode<AnyType>[] finger;
+
+    /**
+     * For each node on the finger path, true if the path goes on to its left
+     * child. Kept apart from the links, as a batch that changes no items may
+     * still relink a node to an identical copy of a shared child.
+     */
+    private boolean[] fingerLeft;
+
+    /** Number of nodes on the finger path. */
+    private int fingerDepth;
+
+    /** modCount when the finger path was recorded; the path is stale once they differ. */
+    private int fingerModCount;
+
     // Test program
     public static void main(String[] args) throws OperationNotSupportedException {
         List<Integer> tree1 = Arrays.asList(20, 10, 30, 8, 12, 28, 32, 7, 9, 11, 13, 27, 29, 31, 33);
@@ -556,11 +3382,11 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
 
         System.out.println();
         System.out.println(
-                "d) equals\n\tCompares the current tree to another tree and returns true if they are identical.");
-        System.out.println("(a) equals (a)?");
-        System.out.println(a.equals(a));
-        System.out.println("(a) equals (b)?");
-        System.out.println(a.equals(b));
+                "d) isIdentical\n\tCompares the current tree to another tree and returns true if they are identical.");
+        System.out.println("(a) identical to (a)?");
+        System.out.println(a.isIdentical(a));
+        System.out.println("(a) identical to (b)?");
+        System.out.println(a.isIdentical(b));
 
         System.out.println();
         System.out.println("e) copy\n\tCreates and returns a new tree that is a copy of the original tree.");
@@ -600,5 +3426,38 @@ public class BinarySearchTree<AnyType extends Comparable<? super AnyType>> {
         System.out.println("Rotate 10 left");
         a.rotateLeft(10);
         a.printLevels();
+
+        System.out.println();
+        System.out.println("j) splay remove\n\tRemoves every item in ascending order from a degenerate splay tree.");
+        BinarySearchTree<Integer> s = new BinarySearchTree<>(Mode.SPLAY);
+        int n = 100000;
+        for (int i = 0; i < n; i++)
+            s.insert(i); // Each insert splays the new largest item to the root, leaving a left path
+        System.out.println("Height before removing");
+        System.out.println(s.height(s.root));
+        for (int i = 0; i < n; i++)
+            s.remove(i);
+        System.out.println("Is the tree empty?");
+        System.out.println(s.isEmpty());
+
+        System.out.println("k) splay reads while iterating\n\tLooks items up in a splay tree while iterating over it.");
+        for (int i = 0; i < 10; i++)
+            s.insert(i);
+        System.out.println("Does the tree contain all of itself?");
+        System.out.println(s.containsAll(s));
+        int successors = 0;
+        for (Integer x : s)
+            if (s.contains(x + 1))
+                successors++;
+        System.out.println("Items whose successor is present");
+        System.out.println(successors);
+        System.out.println("Items a stream finds in the tree");
+        System.out.println(s.stream().filter(s::contains).count());
+        int inRange = 0;
+        for (Integer x : s.subSet(2, true, 8, false).descendingSet())
+            if (s.contains(x))
+                inRange++;
+        System.out.println("Items of subSet(2, 8) found while iterating it in descending order");
+        System.out.println(inRange);
     }
 }
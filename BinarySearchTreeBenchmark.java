@@ -0,0 +1,452 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+// Benchmark suite for BinarySearchTree.
+//
+// Runs every operation over every combination of balancing mode, input shape
+// and tree size, and prints one row per run:
+//   throughput   operations per second over the measured iterations
+//   B/op         bytes allocated by the benchmark thread per operation
+//   p50, p99     per-operation latency in nanoseconds
+//
+// Per-key operations (insert, remove, contains) time every call, so their
+// latencies include the ~20ns cost of System.nanoTime. Whole-tree operations
+// time each call on its own.
+//
+// Usage: java -Xmx8g BinarySearchTreeBenchmark [key=value ...]
+//   sizes=1000,10000,100000,1000000,10000000
+//   shapes=random,sorted,reverse,zigzag
+//   modes=UNBALANCED,AVL,SPLAY
+//   ops=insert,remove,contains,zipfContains,nearContains,nodeCount,isFull,copy,mirror,isMirror,isIdentical,rotate,printLevels
+//   warmup=1 time=3   (seconds per run)
+//   zipf=1.0   (exponent of the key popularity for zipfContains)
+//   near=16   (largest step between consecutive nearContains keys)
+//   cache=0 finger=false   (lookup cache capacity and finger search for the contains ops)
+//
+// zipfContains looks keys up with Zipfian popularity: the i-th most popular
+// key, in random key order, is asked for in proportion to 1/i^zipf. This is
+// the skewed workload where SPLAY keeps the hot keys near the root.
+// nearContains walks the sorted keys in random steps of up to near keys
+// either way, the workload finger search is meant for.
+//
+// Non-random shapes build a degenerate unbalanced tree in quadratic time, so
+// UNBALANCED runs on them stop at degenerateLimit=20000 keys.
+//
+// writers=1,2,4,8 also runs a write benchmark on ConcurrentBinarySearchTree:
+// each of that many threads inserts and then removes its own share of
+// writeSize=1000000 random keys, once per shard count in writeShards=1,32.
+// With one shard every write goes through the same root, so comparing the
+// rows shows how much of the write scaling the sharding buys.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class BinarySearchTreeBenchmark {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        List<String> sizes = list(options, "sizes", "1000,10000,100000,1000000,10000000");
+        List<String> shapes = list(options, "shapes", "random,sorted,reverse,zigzag");
+        List<String> modes = list(options, "modes", "UNBALANCED,AVL,SPLAY");
+        List<String> ops = list(options, "ops",
+                "insert,remove,contains,zipfContains,nearContains,nodeCount,isFull,copy,mirror,isMirror,isIdentical,rotate,printLevels");
+        warmupNanos = (long) (Double.parseDouble(options.getOrDefault("warmup", "1")) * 1e9);
+        measureNanos = (long) (Double.parseDouble(options.getOrDefault("time", "3")) * 1e9);
+        zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        nearStep = Integer.parseInt(options.getOrDefault("near", "16"));
+        cacheCapacity = Integer.parseInt(options.getOrDefault("cache", "0"));
+        fingerSearch = Boolean.parseBoolean(options.getOrDefault("finger", "false"));
+        int degenerateLimit = Integer.parseInt(options.getOrDefault("degenerateLimit", "20000"));
+
+        System.out.printf("%-10s %-8s %9s %-12s %14s %10s %10s %12s%n", "mode", "shape", "size", "op",
+                "ops/s", "B/op", "p50 ns", "p99 ns");
+        for (String m : modes) {
+            BinarySearchTree.Mode mode = BinarySearchTree.Mode.valueOf(m);
+            for (String shape : shapes)
+                for (String size : sizes) {
+                    int n = Integer.parseInt(size);
+                    if (mode == BinarySearchTree.Mode.UNBALANCED && !shape.equals("random") && n > degenerateLimit) {
+                        System.out.printf("%-10s %-8s %9d skipped: degenerate tree above degenerateLimit%n", m,
+                                shape, n);
+                        continue;
+                    }
+                    Integer[] keys = keys(shape, n, new Random(n));
+                    for (String op : ops) {
+                        Result r = run(op, mode, keys);
+                        if (r == null)
+                            System.out.printf("%-10s %-8s %9d %-12s not supported in this mode%n", m, shape, n, op);
+                        else
+                            System.out.printf("%-10s %-8s %9d %-12s %14.0f %10.1f %10d %12d%n", m, shape, n, op,
+                                    r.throughput, r.bytesPerOp, r.p50, r.p99);
+                    }
+                }
+        }
+        if (options.containsKey("writers")) {
+            Integer[] keys = keys("random", Integer.parseInt(options.getOrDefault("writeSize", "1000000")),
+                    new Random(1));
+            System.out.printf("%n%-10s %7s %7s %14s%n", "concurrent", "shards", "writers", "ops/s");
+            for (String shards : list(options, "writeShards", "1,32"))
+                for (String writers : list(options, "writers", ""))
+                    System.out.printf("%-10s %7s %7s %14.0f%n", "write", shards, writers,
+                            concurrentWrites(Integer.parseInt(shards), Integer.parseInt(writers), keys));
+        }
+        System.out.println("sink " + sink);
+    }
+
+    /**
+     * Generates n distinct keys in the order they are inserted.
+     */
+    static Integer[] keys(String shape, int n, Random rnd) {
+        Integer[] keys = new Integer[n];
+        switch (shape) {
+        case "random":
+            for (int i = 0; i < n; i++)
+                keys[i] = i;
+            shuffle(keys, rnd);
+            break;
+        case "sorted":
+            for (int i = 0; i < n; i++)
+                keys[i] = i;
+            break;
+        case "reverse":
+            for (int i = 0; i < n; i++)
+                keys[i] = n - 1 - i;
+            break;
+        case "zigzag": // 0, n-1, 1, n-2, ...
+            for (int i = 0, lo = 0, hi = n - 1; i < n; i++)
+                keys[i] = (i % 2 == 0) ? lo++ : hi--;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return keys;
+    }
+
+    /**
+     * Runs one operation through a warmup phase and a measured phase.
+     *
+     * @return the measurements, or null if the mode does not support the operation.
+     */
+    static Result run(String op, BinarySearchTree.Mode mode, Integer[] keys) throws Exception {
+        Integer[] probes = keys.clone();
+        shuffle(probes, new Random(42));
+        switch (op) {
+        case "insert":
+            return perKey(() -> new BinarySearchTree<Integer>(mode), keys, (t, x) -> t.insert(x));
+        case "remove": {
+            BinarySearchTree<Integer> built = build(mode, keys);
+            return perKey(built::copy, probes, (t, x) -> t.remove(x));
+        }
+        case "contains": {
+            BinarySearchTree<Integer> built = lookups(build(mode, keys));
+            return perKey(() -> built, probes, (t, x) -> sink += t.contains(x) ? 1 : 0);
+        }
+        case "zipfContains": {
+            BinarySearchTree<Integer> built = lookups(build(mode, keys));
+            Integer[] queries = zipf(probes, zipfExponent, new Random(7));
+            return perKey(() -> built, queries, (t, x) -> sink += t.contains(x) ? 1 : 0);
+        }
+        case "nearContains": {
+            BinarySearchTree<Integer> built = lookups(build(mode, keys));
+            Integer[] queries = near(keys, nearStep, new Random(11));
+            return perKey(() -> built, queries, (t, x) -> sink += t.contains(x) ? 1 : 0);
+        }
+        case "nodeCount": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            return whole(1, () -> sink += t.nodeCount());
+        }
+        case "isFull": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            return whole(1, () -> sink += t.isFull() ? 1 : 0);
+        }
+        case "copy": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            return whole(1, () -> sink += t.copy().nodeCount());
+        }
+        case "mirror": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            return whole(1, () -> sink += t.mirror().nodeCount());
+        }
+        case "isMirror": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            BinarySearchTree<Integer> m = t.mirror();
+            return whole(1, () -> sink += t.isMirror(m) ? 1 : 0);
+        }
+        case "isIdentical": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            BinarySearchTree<Integer> c = t.copy();
+            return whole(1, () -> sink += t.isIdentical(c) ? 1 : 0);
+        }
+        case "rotate": {
+            if (mode == BinarySearchTree.Mode.AVL)
+                return null;
+            BinarySearchTree<Integer> t = build(mode, keys);
+            t.insert(Integer.MIN_VALUE); // make sure the root has a left subtree...
+            t.contains(Integer.MAX_VALUE); // ...also once a splay tree has moved the largest key to the root
+            Integer top = t.levelOrder().findFirst().get(); // level order starts at the root
+            return whole(2, () -> {
+                t.rotateRight(top); // the root's left child becomes the root...
+                t.rotateLeft(top); // ...and rotating the old root's parent left restores the shape
+            });
+        }
+        case "printLevels": {
+            BinarySearchTree<Integer> t = build(mode, keys);
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                return whole(1, t::printLevels);
+            } finally {
+                System.setOut(out);
+            }
+        }
+        default:
+            throw new IllegalArgumentException("Unknown op " + op);
+        }
+    }
+
+    /**
+     * Draws as many queries as there are keys, picking the key of popularity
+     * rank i with probability proportional to 1/i^s.
+     *
+     * @param ranked the keys, most popular first.
+     */
+    static Integer[] zipf(Integer[] ranked, double s, Random rnd) {
+        int n = ranked.length;
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++)
+            cumulative[i] = total += 1 / Math.pow(i + 1, s);
+        Integer[] queries = new Integer[n];
+        for (int q = 0; q < n; q++) {
+            int i = Arrays.binarySearch(cumulative, rnd.nextDouble() * total);
+            queries[q] = ranked[Math.min(n - 1, i < 0 ? -i - 1 : i)];
+        }
+        return queries;
+    }
+
+    /**
+     * Draws as many queries as there are keys by a random walk over the
+     * sorted keys, moving up to step keys either way each time.
+     */
+    static Integer[] near(Integer[] keys, int step, Random rnd) {
+        Integer[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        Integer[] queries = new Integer[n];
+        for (int q = 0, i = n / 2; q < n; q++) {
+            i = Math.floorMod(i + rnd.nextInt(2 * step + 1) - step, n);
+            queries[q] = sorted[i];
+        }
+        return queries;
+    }
+
+    /**
+     * Turns on the lookup cache and finger search of a tree as the options ask.
+     */
+    static BinarySearchTree<Integer> lookups(BinarySearchTree<Integer> t) {
+        if (cacheCapacity > 0)
+            t.enableLookupCache(cacheCapacity);
+        if (fingerSearch)
+            t.enableFingerSearch();
+        return t;
+    }
+
+    static BinarySearchTree<Integer> build(BinarySearchTree.Mode mode, Integer[] keys) {
+        BinarySearchTree<Integer> t = new BinarySearchTree<>(mode);
+        for (Integer x : keys)
+            t.insert(x);
+        return t;
+    }
+
+    /**
+     * Times each call of a per-key operation over all keys, starting every
+     * pass from a tree made by the supplier.
+     */
+    static Result perKey(TreeSupplier supplier, Integer[] keys, KeyOp op) throws Exception {
+        Recorder recorder = new Recorder();
+        for (long end = System.nanoTime() + warmupNanos; System.nanoTime() < end;)
+            pass(supplier.get(), keys, op, null);
+        long ops = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        do {
+            BinarySearchTree<Integer> t = supplier.get();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            pass(t, keys, op, recorder);
+            elapsed += System.nanoTime() - start;
+            allocated += allocatedBytes() - bytes;
+            ops += keys.length;
+        } while (elapsed < measureNanos);
+        return recorder.result(ops, elapsed, allocated);
+    }
+
+    static void pass(BinarySearchTree<Integer> t, Integer[] keys, KeyOp op, Recorder recorder) throws Exception {
+        for (Integer x : keys) {
+            long start = System.nanoTime();
+            op.apply(t, x);
+            if (recorder != null)
+                recorder.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Times each call of a whole-tree operation.
+     *
+     * @param opsPerCall the number of operations a call performs.
+     */
+    static Result whole(int opsPerCall, Call call) throws Exception {
+        Recorder recorder = new Recorder();
+        for (long end = System.nanoTime() + warmupNanos; System.nanoTime() < end;)
+            call.run();
+        long ops = 0;
+        long elapsed = 0;
+        long bytes = allocatedBytes();
+        do {
+            long start = System.nanoTime();
+            call.run();
+            long time = System.nanoTime() - start;
+            elapsed += time;
+            recorder.record(time / opsPerCall);
+            ops += opsPerCall;
+        } while (elapsed < measureNanos);
+        return recorder.result(ops, elapsed, allocatedBytes() - bytes);
+    }
+
+    /**
+     * Times threads writers, each inserting and then removing its own share
+     * of the keys in one shared tree, over a warmup phase and a measured phase.
+     *
+     * @return the inserts and removes per second across all writers.
+     */
+    static double concurrentWrites(int shards, int threads, Integer[] keys) throws Exception {
+        for (long end = System.nanoTime() + warmupNanos; System.nanoTime() < end;)
+            writePass(shards, threads, keys);
+        long ops = 0;
+        long elapsed = 0;
+        do {
+            elapsed += writePass(shards, threads, keys);
+            ops += 2L * keys.length;
+        } while (elapsed < measureNanos);
+        return ops * 1e9 / elapsed;
+    }
+
+    /**
+     * Runs the writers once over a new tree.
+     *
+     * @return the elapsed nanoseconds from releasing the writers to the last one finishing.
+     */
+    static long writePass(int shards, int threads, Integer[] keys) throws Exception {
+        ConcurrentBinarySearchTree<Integer> t = new ConcurrentBinarySearchTree<>(shards);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] writers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            int from = (int) ((long) keys.length * w / threads);
+            int to = (int) ((long) keys.length * (w + 1) / threads);
+            writers[w] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = from; i < to; i++)
+                    t.insert(keys[i]);
+                for (int i = from; i < to; i++)
+                    t.remove(keys[i]);
+            });
+            writers[w].start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread w : writers)
+            w.join();
+        long elapsed = System.nanoTime() - start;
+        if (!t.isEmpty())
+            throw new IllegalStateException("Writers left " + t.nodeCount() + " items behind");
+        return elapsed;
+    }
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static void shuffle(Integer[] a, Random rnd) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            Integer tmp = a[i];
+            a[i] = a[j];
+            a[j] = tmp;
+        }
+    }
+
+    static List<String> list(Map<String, String> options, String key, String defaults) {
+        return Arrays.asList(options.getOrDefault(key, defaults).split(","));
+    }
+
+    // Keeps a bounded, evenly spread sample of latencies
+    static class Recorder {
+        void record(long nanos) {
+            if (++seen % stride != 0)
+                return;
+            if (count == samples.length) { // keep every other sample and halve the rate
+                for (int i = 0; i < count / 2; i++)
+                    samples[i] = samples[2 * i + 1];
+                count /= 2;
+                stride *= 2;
+            }
+            samples[count++] = nanos;
+        }
+
+        Result result(long ops, long elapsed, long allocated) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            Result r = new Result();
+            r.throughput = ops * 1e9 / elapsed;
+            r.bytesPerOp = (double) allocated / ops;
+            r.p50 = sorted[(int) (count * 0.50)];
+            r.p99 = sorted[Math.min(count - 1, (int) (count * 0.99))];
+            return r;
+        }
+
+        private final long[] samples = new long[1 << 20];
+        private int count;
+        private long seen;
+        private long stride = 1;
+    }
+
+    static class Result {
+        double throughput;
+        double bytesPerOp;
+        long p50;
+        long p99;
+    }
+
+    interface TreeSupplier {
+        BinarySearchTree<Integer> get();
+    }
+
+    interface KeyOp {
+        void apply(BinarySearchTree<Integer> t, Integer x) throws Exception;
+    }
+
+    interface Call {
+        void run() throws Exception;
+    }
+
+    static double zipfExponent;
+    static int nearStep;
+    static int cacheCapacity;
+    static boolean fingerSearch;
+    static long warmupNanos;
+    static long measureNanos;
+    static volatile long sink; // Consumes results so the JIT cannot drop the work
+}
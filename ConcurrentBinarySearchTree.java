@@ -0,0 +1,364 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// int nodeCount( )       --> Return the count of nodes
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// Thread-safe AVL tree for trees shared between request threads.
+//  * Items are spread by hash code over independent shards, each an AVL tree
+//    of immutable nodes. A write copies the O(log n) nodes on its search
+//    path in one shard and publishes that shard's new root with a
+//    compare-and-set, retrying if another writer got there first. Writers
+//    to different shards never touch the same root, so they do not contend.
+//  * A read takes a shard root once and walks nodes that can never change,
+//    so contains is wait-free and never blocks writers. findMin and findMax
+//    take the smallest or largest of the shard minimums or maximums.
+//  * contains sees its shard as of one write. findMin, findMax, nodeCount and
+//    printTree visit the shards one after another, so while writes are in
+//    flight they may see some of them and not others.
+//  * Items that compare equal must have equal hash codes, as for HashSet.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class ConcurrentBinarySearchTree<AnyType extends Comparable<? super AnyType>> {
+    /**
+     * Construct the tree with four shards per available processor.
+     */
+    public ConcurrentBinarySearchTree() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct the tree.
+     *
+     * @param shards the number of shards, rounded up to a power of two.
+     * @throws IllegalArgumentException if shards is less than one.
+     */
+    public ConcurrentBinarySearchTree(int shards) {
+        if (shards < 1)
+            throw new IllegalArgumentException("Shard count must be positive: " + shards);
+        int n = 1;
+        while (n < shards)
+            n <<= 1;
+        roots = new AtomicReferenceArray<>(n);
+    }
+
+    /**
+     * Insert into the tree; duplicates are ignored.
+     *
+     * @param x the item to insert.
+     */
+    public void insert(AnyType x) {
+        int i = shard(x);
+        while (true) {
+            BinaryNode<AnyType> r = roots.get(i);
+            BinaryNode<AnyType> t = insert(x, r);
+            if (t == r || roots.compareAndSet(i, r, t))
+                return;
+        }
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     *
+     * @param x the item to remove.
+     */
+    public void remove(AnyType x) {
+        int i = shard(x);
+        while (true) {
+            BinaryNode<AnyType> r = roots.get(i);
+            BinaryNode<AnyType> t = remove(x, r);
+            if (t == r || roots.compareAndSet(i, r, t))
+                return;
+        }
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public AnyType findMin() {
+        AnyType min = null;
+        for (int i = 0; i < roots.length(); i++) {
+            BinaryNode<AnyType> t = roots.get(i);
+            if (t == null)
+                continue;
+            while (t.left != null)
+                t = t.left;
+            if (min == null || t.element.compareTo(min) < 0)
+                min = t.element;
+        }
+        if (min == null)
+            throw new UnderflowException();
+        return min;
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public AnyType findMax() {
+        AnyType max = null;
+        for (int i = 0; i < roots.length(); i++) {
+            BinaryNode<AnyType> t = roots.get(i);
+            if (t == null)
+                continue;
+            while (t.right != null)
+                t = t.right;
+            if (max == null || t.element.compareTo(max) > 0)
+                max = t.element;
+        }
+        if (max == null)
+            throw new UnderflowException();
+        return max;
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(AnyType x) {
+        BinaryNode<AnyType> t = roots.get(shard(x));
+        while (t != null) {
+            int compareResult = x.compareTo(t.element);
+
+            if (compareResult < 0)
+                t = t.left;
+            else if (compareResult > 0)
+                t = t.right;
+            else
+                return true; // Match
+        }
+        return false;
+    }
+
+    /**
+     * Make the tree logically empty.
+     */
+    public void makeEmpty() {
+        for (int i = 0; i < roots.length(); i++)
+            roots.set(i, null);
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < roots.length(); i++)
+            if (roots.get(i) != null)
+                return false;
+        return true;
+    }
+
+    /**
+     * Count the number of nodes in time proportional to the number of shards.
+     */
+    public int nodeCount() {
+        int count = 0;
+        for (int i = 0; i < roots.length(); i++)
+            count += size(roots.get(i));
+        return count;
+    }
+
+    /**
+     * Print the tree contents in sorted order, merging the shards.
+     */
+    public void printTree() {
+        PriorityQueue<Cursor<AnyType>> heads = new PriorityQueue<>();
+        for (int i = 0; i < roots.length(); i++) {
+            BinaryNode<AnyType> t = roots.get(i);
+            if (t != null)
+                heads.add(new Cursor<>(t));
+        }
+        if (heads.isEmpty()) {
+            System.out.println("Empty tree");
+            return;
+        }
+        while (!heads.isEmpty()) {
+            Cursor<AnyType> c = heads.remove();
+            System.out.print(c.element + " ");
+            if (c.advance())
+                heads.add(c);
+        }
+    }
+
+    /**
+     * Internal method to pick the shard that holds x.
+     */
+    private int shard(AnyType x) {
+        int h = x.hashCode();
+        return (h ^ (h >>> 16)) & (roots.length() - 1);
+    }
+
+    /**
+     * Internal method to insert into a subtree without modifying it.
+     * Recursion depth is bounded by the AVL height.
+     *
+     * @param x the item to insert.
+     * @param t the node that roots the subtree.
+     * @return the root of the new subtree, or t itself if x is a duplicate.
+     */
+    private BinaryNode<AnyType> insert(AnyType x, BinaryNode<AnyType> t) {
+        if (t == null)
+            return new BinaryNode<>(x, null, null);
+
+        int compareResult = x.compareTo(t.element);
+
+        if (compareResult < 0) {
+            BinaryNode<AnyType> lt = insert(x, t.left);
+            return (lt == t.left) ? t : balance(t.element, lt, t.right);
+        } else if (compareResult > 0) {
+            BinaryNode<AnyType> rt = insert(x, t.right);
+            return (rt == t.right) ? t : balance(t.element, t.left, rt);
+        }
+        return t; // Duplicate; do nothing
+    }
+
+    /**
+     * Internal method to remove from a subtree without modifying it.
+     *
+     * @param x the item to remove.
+     * @param t the node that roots the subtree.
+     * @return the root of the new subtree, or t itself if x is not found.
+     */
+    private BinaryNode<AnyType> remove(AnyType x, BinaryNode<AnyType> t) {
+        if (t == null)
+            return t; // Item not found; do nothing
+
+        int compareResult = x.compareTo(t.element);
+
+        if (compareResult < 0) {
+            BinaryNode<AnyType> lt = remove(x, t.left);
+            return (lt == t.left) ? t : balance(t.element, lt, t.right);
+        } else if (compareResult > 0) {
+            BinaryNode<AnyType> rt = remove(x, t.right);
+            return (rt == t.right) ? t : balance(t.element, t.left, rt);
+        } else if (t.left != null && t.right != null) { // Two children
+            BinaryNode<AnyType> min = t.right;
+            while (min.left != null)
+                min = min.left;
+            return balance(min.element, t.left, removeMin(t.right));
+        } else
+            return (t.left != null) ? t.left : t.right;
+    }
+
+    /**
+     * Internal method to remove the smallest item from a non-empty subtree.
+     */
+    private BinaryNode<AnyType> removeMin(BinaryNode<AnyType> t) {
+        if (t.left == null)
+            return t.right;
+        return balance(t.element, removeMin(t.left), t.right);
+    }
+
+    /**
+     * Internal method to build a node from its parts, rotating if the two
+     * subtrees differ in height by more than one. The subtrees must differ
+     * by no more than two, as after a single insert or remove.
+     */
+    private BinaryNode<AnyType> balance(AnyType x, BinaryNode<AnyType> lt, BinaryNode<AnyType> rt) {
+        if (height(lt) - height(rt) > ALLOWED_IMBALANCE) {
+            if (height(lt.left) >= height(lt.right)) // single rotation with left child
+                return new BinaryNode<>(lt.element, lt.left, new BinaryNode<>(x, lt.right, rt));
+            BinaryNode<AnyType> k2 = lt.right; // double rotation with left child
+            return new BinaryNode<>(k2.element, new BinaryNode<>(lt.element, lt.left, k2.left),
+                    new BinaryNode<>(x, k2.right, rt));
+        }
+        if (height(rt) - height(lt) > ALLOWED_IMBALANCE) {
+            if (height(rt.right) >= height(rt.left)) // single rotation with right child
+                return new BinaryNode<>(rt.element, new BinaryNode<>(x, lt, rt.left), rt.right);
+            BinaryNode<AnyType> k2 = rt.left; // double rotation with right child
+            return new BinaryNode<>(k2.element, new BinaryNode<>(x, lt, k2.left),
+                    new BinaryNode<>(rt.element, k2.right, rt.right));
+        }
+        return new BinaryNode<>(x, lt, rt);
+    }
+
+    /**
+     * Return the height of node t, or -1, if null.
+     */
+    private static int height(BinaryNode<?> t) {
+        return t == null ? -1 : t.height;
+    }
+
+    /**
+     * Return the number of nodes in the subtree rooted at t, or 0, if null.
+     */
+    private static int size(BinaryNode<?> t) {
+        return t == null ? 0 : t.size;
+    }
+
+    // Immutable node; safe to share between threads once published
+    private static class BinaryNode<AnyType> {
+        BinaryNode(AnyType theElement, BinaryNode<AnyType> lt, BinaryNode<AnyType> rt) {
+            element = theElement;
+            left = lt;
+            right = rt;
+            height = Math.max(height(lt), height(rt)) + 1;
+            size = size(lt) + size(rt) + 1;
+        }
+
+        final AnyType element; // The data in the node
+        final BinaryNode<AnyType> left; // Left child
+        final BinaryNode<AnyType> right; // Right child
+        final int height; // Height of the subtree rooted here
+        final int size; // Number of nodes in the subtree rooted here
+    }
+
+    // In-order walk of one shard, ordered by the item it is on
+    private static class Cursor<AnyType extends Comparable<? super AnyType>> implements Comparable<Cursor<AnyType>> {
+        Cursor(BinaryNode<AnyType> t) {
+            descend(t);
+            advance();
+        }
+
+        /**
+         * Move to the next item of the shard.
+         *
+         * @return false if the shard has no more items.
+         */
+        boolean advance() {
+            if (stack.isEmpty())
+                return false;
+            BinaryNode<AnyType> t = stack.pop();
+            element = t.element;
+            descend(t.right);
+            return true;
+        }
+
+        private void descend(BinaryNode<AnyType> t) {
+            for (; t != null; t = t.left)
+                stack.push(t);
+        }
+
+        @Override
+        public int compareTo(Cursor<AnyType> other) {
+            return element.compareTo(other.element);
+        }
+
+        AnyType element; // The item the walk is on
+        private final Deque<BinaryNode<AnyType>> stack = new ArrayDeque<>();
+    }
+
+    private static final int ALLOWED_IMBALANCE = 1;
+
+    /** The shard roots, each replaced as a whole by every write to its shard. */
+    private final AtomicReferenceArray<BinaryNode<AnyType>> roots;
+}
@@ -0,0 +1,750 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import javax.naming.OperationNotSupportedException;
+
+// ******************PUBLIC OPERATIONS*********************
+// static open( dir, mode, codec )  --> Open or create the tree saved in dir
+// void insert( x )       --> Insert x
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// void close( )          --> Sync the log and release the directory
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+// Throws IOException if the log or a checkpoint cannot be read or written
+//
+// BinarySearchTree whose changes survive a crash.
+//  * Every insert, remove, rotation and makeEmpty that changes the tree is
+//    appended to a write-ahead log in dir. Records collect in a buffer and
+//    are written and fsynced as one checksummed frame every syncEvery
+//    changes, so a crash loses at most the last syncEvery - 1 changes; with
+//    syncEvery 1 every change is on disk before the call returns.
+//  * Once the log holds as many records as the tree holds items, the tree
+//    is written to a new checkpoint in level order, which rebuilds the same
+//    shape, and the log is emptied. Rewriting the tree costs O(1) amortized
+//    per change and keeps the log no longer than the tree.
+//  * open() loads the last checkpoint and replays the log records written
+//    after it. A frame torn by a crash fails its checksum and is cut off.
+//  * Splay mode is not supported, as contains would change the shape
+//    without writing a record.
+//
+// ******************************ADDITIONAL METHODS****************************
+// int nodeCount()  Returns the count of nodes in constant time.
+// rotateRight(x), rotateLeft(x)  Logged versions of the BinarySearchTree rotations.
+// printLevels()  Performs a level-by-level printing of the tree.
+// sync()  Writes and fsyncs the changes not yet on disk.
+// checkpoint()  Writes a checkpoint now and empties the log.
+// ******************ERRORS****************************************************
+// Throws OperationNotSupportedException on manual rotations of an AVL tree
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class DurableBinarySearchTree<AnyType extends Comparable<? super AnyType>> implements Closeable {
+    /**
+     * Converts items to and from the bytes stored in the log and checkpoints.
+     */
+    public interface Codec<AnyType> {
+        /** Writes x to out. */
+        void write(AnyType x, DataOutput out) throws IOException;
+
+        /** Reads an item written by write. */
+        AnyType read(DataInput in) throws IOException;
+    }
+
+    /** Codec storing an Integer in 4 bytes. */
+    public static final Codec<Integer> INTEGER_CODEC = new Codec<Integer>() {
+        @Override
+        public void write(Integer x, DataOutput out) throws IOException {
+            out.writeInt(x);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /** Codec storing a String of up to 65535 bytes as modified UTF-8. */
+    public static final Codec<String> STRING_CODEC = new Codec<String>() {
+        @Override
+        public void write(String x, DataOutput out) throws IOException {
+            out.writeUTF(x);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /**
+     * Construct a tree over a directory; open() recovers its contents.
+     */
+    private DurableBinarySearchTree(Path dir, BinarySearchTree.Mode mode, Codec<AnyType> codec, int syncEvery) {
+        this.dir = dir;
+        this.mode = mode;
+        this.codec = codec;
+        this.syncEvery = syncEvery;
+        tree = new BinarySearchTree<>(mode);
+        buffer = new RecordBuffer();
+    }
+
+    /**
+     * Opens the tree saved in a directory, creating the directory and an
+     * empty tree if there is none, with every change synced before it
+     * returns.
+     *
+     * @param dir the directory holding the log and checkpoint.
+     * @param mode the balancing strategy; must match the saved tree's.
+     * @param codec how items are stored.
+     * @return the recovered tree.
+     * @throws IOException if the files cannot be read or are not a saved tree.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> DurableBinarySearchTree<AnyType> open(Path dir,
+            BinarySearchTree.Mode mode, Codec<AnyType> codec) throws IOException {
+        return open(dir, mode, codec, 1);
+    }
+
+    /**
+     * Opens the tree saved in a directory, syncing the log once per group
+     * of changes.
+     *
+     * @param dir the directory holding the log and checkpoint.
+     * @param mode the balancing strategy; must match the saved tree's.
+     * @param codec how items are stored.
+     * @param syncEvery the number of changes written and fsynced together.
+     * @return the recovered tree.
+     * @throws IOException if the files cannot be read, are not a saved tree,
+     *         or are in use by another process.
+     * @throws IllegalArgumentException if mode is SPLAY or syncEvery is less than 1.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> DurableBinarySearchTree<AnyType> open(Path dir,
+            BinarySearchTree.Mode mode, Codec<AnyType> codec, int syncEvery) throws IOException {
+        if (mode == BinarySearchTree.Mode.SPLAY)
+            throw new IllegalArgumentException("Splay mode is not supported");
+        if (syncEvery < 1)
+            throw new IllegalArgumentException("syncEvery must be at least 1 but was " + syncEvery);
+        DurableBinarySearchTree<AnyType> t = new DurableBinarySearchTree<>(dir, mode, codec, syncEvery);
+        t.recover();
+        return t;
+    }
+
+    /**
+     * Insert into the tree; duplicates are ignored and not logged.
+     *
+     * @param x the item to insert.
+     * @throws IOException if the change cannot be logged.
+     */
+    public void insert(AnyType x) throws IOException {
+        checkOpen();
+        if (tree.add(x))
+            log(INSERT, x);
+    }
+
+    /**
+     * Remove from the tree. Nothing is done or logged if x is not found.
+     *
+     * @param x the item to remove.
+     * @throws IOException if the change cannot be logged.
+     */
+    public void remove(AnyType x) throws IOException {
+        checkOpen();
+        if (tree.remove((Object) x))
+            log(REMOVE, x);
+    }
+
+    /**
+     * Perform a single right rotation on the node with value of x.
+     *
+     * @throws OperationNotSupportedException as BinarySearchTree.rotateRight.
+     * @throws IOException if the change cannot be logged.
+     */
+    public void rotateRight(AnyType x) throws OperationNotSupportedException, IOException {
+        checkOpen();
+        tree.rotateRight(x);
+        log(ROTATE_RIGHT, x);
+    }
+
+    /**
+     * Perform a single left rotation on the node with value of x.
+     *
+     * @throws OperationNotSupportedException as BinarySearchTree.rotateLeft.
+     * @throws IOException if the change cannot be logged.
+     */
+    public void rotateLeft(AnyType x) throws OperationNotSupportedException, IOException {
+        checkOpen();
+        tree.rotateLeft(x);
+        log(ROTATE_LEFT, x);
+    }
+
+    /**
+     * Make the tree logically empty. Nothing is logged if it already is.
+     *
+     * @throws IOException if the change cannot be logged.
+     */
+    public void makeEmpty() throws IOException {
+        checkOpen();
+        if (tree.isEmpty())
+            return;
+        tree.makeEmpty();
+        log(CLEAR, null);
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(AnyType x) {
+        return tree.contains(x);
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public AnyType findMin() {
+        return tree.findMin();
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public AnyType findMax() {
+        return tree.findMax();
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    /**
+     * Count the number of nodes.
+     */
+    public int nodeCount() {
+        return tree.nodeCount();
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        tree.printTree();
+    }
+
+    /**
+     * Printout the tree level-by-level.
+     */
+    public void printLevels() {
+        tree.printLevels();
+    }
+
+    /**
+     * Writes the buffered log records and fsyncs the log, making every
+     * change so far durable.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void sync() throws IOException {
+        checkOpen();
+        try {
+            flush();
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the whole tree and empties the log, so that
+     * open() has no records to replay.
+     *
+     * @throws IOException if the checkpoint or the log cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        checkOpen();
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * Syncs the log and closes it, releasing the directory to other
+     * processes. Closing a closed tree does nothing.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (log == null || !log.isOpen())
+            return;
+        try {
+            if (failure == null)
+                flush();
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * Internal method to load the checkpoint, creating it for a new tree,
+     * lock the log and replay it.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint))
+            readCheckpoint(checkpoint);
+        else
+            writeCheckpointFile(); // records the mode before any log exists
+        log = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (log.tryLock() == null)
+                throw new IOException(dir + " is open in another process");
+            replay();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Internal method to load a checkpoint by inserting its items in the
+     * level order they were written in.
+     */
+    private void readCheckpoint(Path checkpoint) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(Files.newInputStream(checkpoint), BUFFER_SIZE), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(checkpoint + " is not a checkpoint");
+            int saved = in.readByte();
+            if (saved != mode.ordinal())
+                throw new IOException(checkpoint + " holds a tree of another balancing mode than " + mode);
+            sequence = in.readLong();
+            for (int count = in.readInt(); count > 0; count--)
+                tree.insert(codec.read(in));
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected)
+                throw new IOException(checkpoint + " is corrupt");
+        } catch (EOFException e) {
+            throw new IOException(checkpoint + " is truncated", e);
+        }
+    }
+
+    /**
+     * Internal method to apply the log records written after the
+     * checkpoint. Records up to the checkpoint's sequence number are left
+     * from a crash between writing the checkpoint and emptying the log, and
+     * are skipped. Reading stops at the first short or corrupt frame, and
+     * the log is cut there so new frames follow the last good one.
+     */
+    private void replay() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), BUFFER_SIZE));
+        byte[] body = new byte[BUFFER_SIZE];
+        long good = 0; // End of the last good frame
+        while (true) {
+            int length;
+            int expected;
+            try {
+                length = in.readInt();
+                expected = in.readInt();
+                if (length < FRAME_BODY_MINIMUM || length > FRAME_BODY_MAXIMUM)
+                    break;
+                if (body.length < length)
+                    body = new byte[Math.max(length, body.length * 2)];
+                in.readFully(body, 0, length);
+            } catch (EOFException e) {
+                break; // Torn last frame
+            }
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != expected)
+                break;
+            DataInputStream frame = new DataInputStream(new ByteArrayInputStream(body, 0, length));
+            for (long n = frame.readLong(); frame.available() > 0; n++) {
+                int type = frame.readByte();
+                if (type < INSERT || type > CLEAR)
+                    throw new IOException("Unknown log record type " + type);
+                AnyType x = (type == CLEAR) ? null : codec.read(frame);
+                if (n > sequence) {
+                    apply(type, x);
+                    sequence = n;
+                }
+                logRecords++;
+            }
+            good += FRAME_HEADER + length;
+        }
+        // in is not closed, as that would close the log
+        if (good < log.size())
+            log.truncate(good);
+        log.position(good);
+    }
+
+    /**
+     * Internal method to redo one logged change.
+     */
+    private void apply(int type, AnyType x) throws IOException {
+        try {
+            switch (type) {
+            case INSERT:
+                tree.insert(x);
+                break;
+            case REMOVE:
+                tree.remove(x);
+                break;
+            case ROTATE_RIGHT:
+                tree.rotateRight(x);
+                break;
+            case ROTATE_LEFT:
+                tree.rotateLeft(x);
+                break;
+            default:
+                tree.makeEmpty();
+                break;
+            }
+        } catch (OperationNotSupportedException e) {
+            throw new IOException("A logged rotation cannot be replayed", e);
+        }
+    }
+
+    /**
+     * Internal method to append a record of a change the tree has just
+     * made, then sync the group or checkpoint if it is due. Records carry
+     * no header of their own: the frame holding them starts with its
+     * length, checksum and the sequence number of its first record. Any
+     * failure leaves the tree ahead of its log, so the tree stops
+     * accepting changes until it is reopened.
+     *
+     * @param type the kind of change.
+     * @param x the item changed, or null for makeEmpty.
+     */
+    private void log(int type, AnyType x) throws IOException {
+        try {
+            if (buffer.size() == 0) { // start a frame
+                buffer.writeInt(0); // length and checksum, filled in by seal
+                buffer.writeInt(0);
+                buffer.writeLong(sequence + 1);
+            }
+            buffer.writeByte(type);
+            if (x != null)
+                codec.write(x, buffer);
+            sequence++;
+            logRecords++;
+            if (++unsynced >= syncEvery)
+                flush();
+            else if (buffer.size() >= BUFFER_SIZE)
+                writeFrame();
+            if (logRecords >= Math.max(MINIMUM_CHECKPOINT_RECORDS, tree.nodeCount()))
+                writeCheckpoint();
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * Internal method to write the buffered records and fsync the log.
+     */
+    private void flush() throws IOException {
+        if (unsynced == 0)
+            return;
+        if (buffer.size() > 0)
+            writeFrame();
+        log.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Internal method to seal the buffered frame and write it to the log.
+     */
+    private void writeFrame() throws IOException {
+        if (buffer.size() - FRAME_HEADER > FRAME_BODY_MAXIMUM)
+            throw new IOException("A log frame of " + buffer.size() + " bytes is too large to replay");
+        buffer.seal(crc);
+        buffer.drainTo(log, null);
+    }
+
+    /**
+     * Internal method to write a checkpoint and empty the log. The log is
+     * synced first, so a crash at any point leaves either the old
+     * checkpoint and a complete log or the new checkpoint.
+     */
+    private void writeCheckpoint() throws IOException {
+        flush();
+        writeCheckpointFile();
+        log.truncate(0);
+        log.position(0);
+        logRecords = 0;
+    }
+
+    /**
+     * Internal method to write the tree in level order to a temporary file
+     * and move it over the checkpoint once it is on disk.
+     */
+    private void writeCheckpointFile() throws IOException {
+        Path temporary = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        RecordBuffer out = new RecordBuffer();
+        CRC32 sum = new CRC32();
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(mode.ordinal());
+            out.writeLong(sequence);
+            out.writeInt(tree.nodeCount());
+            Iterator<AnyType> items = tree.levelOrder().iterator();
+            while (items.hasNext()) {
+                codec.write(items.next(), out);
+                if (out.size() >= BUFFER_SIZE)
+                    out.drainTo(file, sum);
+            }
+            out.drainTo(file, sum);
+            out.writeInt((int) sum.getValue());
+            out.drainTo(file, null);
+            file.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true); // make the rename durable
+        } catch (IOException e) {
+            // Some platforms cannot open a directory; the rename is then as durable as the OS makes it
+        }
+    }
+
+    /**
+     * Internal method to refuse changes once the tree is closed or its log
+     * has failed.
+     */
+    private void checkOpen() throws IOException {
+        if (failure != null)
+            throw new IOException("The log of " + dir + " failed; reopen the tree to recover", failure);
+        if (!log.isOpen())
+            throw new ClosedChannelException();
+    }
+
+    /**
+     * Internal method to record a log failure and close the log.
+     *
+     * @return e, for the caller to throw.
+     */
+    private IOException fail(IOException e) {
+        failure = e;
+        try {
+            log.close();
+        } catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+        return e;
+    }
+
+    // Growable byte buffer that encodes records and hands them to a channel. It
+    // implements DataOutput itself, as a DataOutputStream over a locking
+    // ByteArrayOutputStream costs more per record than the tree insert.
+    private static class RecordBuffer extends OutputStream implements DataOutput {
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void writeBoolean(boolean v) {
+            write(v ? 1 : 0);
+        }
+
+        @Override
+        public void writeByte(int v) {
+            write(v);
+        }
+
+        @Override
+        public void writeShort(int v) {
+            ensure(2);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        @Override
+        public void writeChar(int v) {
+            writeShort(v);
+        }
+
+        @Override
+        public void writeInt(int v) {
+            ensure(4);
+            buf[count++] = (byte) (v >>> 24);
+            buf[count++] = (byte) (v >>> 16);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        @Override
+        public void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        @Override
+        public void writeFloat(float v) {
+            writeInt(Float.floatToIntBits(v));
+        }
+
+        @Override
+        public void writeDouble(double v) {
+            writeLong(Double.doubleToLongBits(v));
+        }
+
+        @Override
+        public void writeBytes(String s) throws IOException {
+            strings().writeBytes(s);
+        }
+
+        @Override
+        public void writeChars(String s) throws IOException {
+            strings().writeChars(s);
+        }
+
+        @Override
+        public void writeUTF(String s) throws IOException {
+            strings().writeUTF(s);
+        }
+
+        /**
+         * Returns the number of bytes in the buffer.
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Fills in the length and checksum of the frame in the buffer.
+         */
+        void seal(CRC32 crc) {
+            int length = count - FRAME_HEADER;
+            crc.reset();
+            crc.update(buf, FRAME_HEADER, length);
+            ByteBuffer.wrap(buf, 0, FRAME_HEADER).putInt(length).putInt((int) crc.getValue());
+        }
+
+        /**
+         * Writes out and clears the buffer, adding its bytes to sum if not null.
+         */
+        void drainTo(FileChannel out, CRC32 sum) throws IOException {
+            if (sum != null)
+                sum.update(buf, 0, count);
+            ByteBuffer b = ByteBuffer.wrap(buf, 0, count);
+            while (b.hasRemaining())
+                out.write(b);
+            count = 0;
+        }
+
+        /**
+         * Grows the buffer to take n more bytes.
+         */
+        private void ensure(int n) {
+            if (count + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+
+        /**
+         * Returns a stream that encodes strings as DataOutputStream does, into this buffer.
+         */
+        private DataOutputStream strings() {
+            if (strings == null)
+                strings = new DataOutputStream(this);
+            return strings;
+        }
+
+        private byte[] buf = new byte[BUFFER_SIZE + 256]; // The bytes, in buf[0..count)
+        private int count;
+        private DataOutputStream strings; // Encodes writeUTF, writeBytes and writeChars
+    }
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOG_FILE = "log";
+    private static final int MAGIC = 0x42535443; // "BSTC"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MINIMUM_CHECKPOINT_RECORDS = 1 << 16;
+    private static final int FRAME_HEADER = 8; // length and checksum
+    private static final int FRAME_BODY_MINIMUM = 9; // first sequence number and a record type
+    private static final int FRAME_BODY_MAXIMUM = 1 << 24;
+
+    // Log record types
+    private static final int INSERT = 1;
+    private static final int REMOVE = 2;
+    private static final int ROTATE_RIGHT = 3;
+    private static final int ROTATE_LEFT = 4;
+    private static final int CLEAR = 5;
+
+    /** The tree in memory. */
+    private final BinarySearchTree<AnyType> tree;
+
+    /** The directory holding the log and checkpoint. */
+    private final Path dir;
+
+    /** The balancing strategy, recorded in the checkpoint. */
+    private final BinarySearchTree.Mode mode;
+
+    /** How items are stored. */
+    private final Codec<AnyType> codec;
+
+    /** Number of changes written and fsynced together. */
+    private final int syncEvery;
+
+    /** The log, open and locked while the tree is. */
+    private FileChannel log;
+
+    /** Records not yet written to the log. */
+    private final RecordBuffer buffer;
+
+    /** Reusable checksum of the frame being sealed or replayed. */
+    private final CRC32 crc = new CRC32();
+
+    /** Sequence number of the last change made, in the checkpoint or the log. */
+    private long sequence;
+
+    /** Number of records in the log, which sets when the next checkpoint is due. */
+    private long logRecords;
+
+    /** Number of changes not yet fsynced. */
+    private int unsynced;
+
+    /** The error that stopped the log, or null. */
+    private IOException failure;
+}
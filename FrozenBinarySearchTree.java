@@ -0,0 +1,179 @@
+import java.util.*;
+
+// ******************PUBLIC OPERATIONS*********************
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// int nodeCount( )       --> Return the count of items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// Immutable, read-optimized copy of a BinarySearchTree, made by freeze().
+//  * The items are stored in one array in Eytzinger (breadth-first) order:
+//    the root is at index 1 and the children of index k are at 2k and 2k+1.
+//    The top levels of every search share the first few cache lines, and a
+//    search touches no node objects.
+//  * contains descends without a branch on the comparison, moving to
+//    2k + (x > a[k]), then recovers the match from the final index.
+//  * Trees of Integer items in their natural ordering also keep the keys in
+//    an int array, so those searches compare primitives and never
+//    dereference an Integer.
+//  * Items are compared with the comparator of the tree frozen, if it has one.
+//  * The frozen tree never changes, so any number of threads can read it.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class FrozenBinarySearchTree<AnyType extends Comparable<? super AnyType>> {
+    /**
+     * Construct a frozen copy of the items of a tree.
+     */
+    FrozenBinarySearchTree(BinarySearchTree<AnyType> t) {
+        n = t.nodeCount();
+        comparator = t.comparator();
+        keys = new Object[n + 1];
+        Iterator<AnyType> items = t.iterator();
+        boolean allInts = comparator == null;
+        for (int k = first(); k != 0; k = next(k)) { // in-order over the layout, so items come out sorted
+            AnyType x = items.next();
+            keys[k] = x;
+            allInts &= x instanceof Integer;
+        }
+        if (allInts && n > 0) {
+            ints = new int[n + 1];
+            for (int k = 1; k <= n; k++)
+                ints[k] = (Integer) keys[k];
+        } else
+            ints = null;
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(AnyType x) {
+        if (ints != null)
+            return contains(((Integer) x).intValue());
+        int k = 1;
+        while (k <= n)
+            k = 2 * k + (compare(x, key(k)) > 0 ? 1 : 0);
+        k >>= Integer.numberOfTrailingZeros(~k) + 1; // undo the right turns after the last left turn
+        return k != 0 && compare(x, key(k)) == 0;
+    }
+
+    /**
+     * Internal method to compare two items in the order of the tree.
+     */
+    private int compare(AnyType x, AnyType y) {
+        return (comparator == null) ? x.compareTo(y) : comparator.compare(x, y);
+    }
+
+    /**
+     * Internal method to find an int in a tree of Integer items.
+     */
+    private boolean contains(int x) {
+        int[] a = ints;
+        int k = 1;
+        while (k <= n)
+            k = 2 * k + (x > a[k] ? 1 : 0);
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && a[k] == x;
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public AnyType findMin() {
+        if (isEmpty())
+            throw new UnderflowException();
+        return key(first());
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public AnyType findMax() {
+        if (isEmpty())
+            throw new UnderflowException();
+        int k = 1;
+        while (2 * k + 1 <= n)
+            k = 2 * k + 1;
+        return key(k);
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Count the number of items.
+     */
+    public int nodeCount() {
+        return n;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        if (isEmpty()) {
+            System.out.println("Empty tree");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int k = first(); k != 0; k = next(k))
+            sb.append(keys[k]).append(' ');
+        System.out.print(sb);
+    }
+
+    /**
+     * Internal method to find the index of the smallest item, or 0 if empty.
+     */
+    private int first() {
+        if (n == 0)
+            return 0;
+        int k = 1;
+        while (2 * k <= n)
+            k = 2 * k;
+        return k;
+    }
+
+    /**
+     * Internal method to find the index of the in-order successor of index k,
+     * or 0 if k holds the largest item.
+     */
+    private int next(int k) {
+        if (2 * k + 1 <= n) { // leftmost index of the right subtree
+            k = 2 * k + 1;
+            while (2 * k <= n)
+                k = 2 * k;
+            return k;
+        }
+        while ((k & 1) == 1) // climb while coming from a right child
+            k >>= 1;
+        return k >> 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AnyType key(int k) {
+        return (AnyType) keys[k];
+    }
+
+    private final int n; // Number of items
+    private final Comparator<? super AnyType> comparator; // Ordering of the items, or null for the natural one
+    private final Object[] keys; // Items in Eytzinger order, from index 1
+    private final int[] ints; // The same keys unboxed if all items are Integers, else null
+}
@@ -0,0 +1,115 @@
+import java.util.*;
+
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// long findMin( )        --> Return smallest item
+// long findMax( )        --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// Binary search tree of long keys stored inline in the nodes, so insert and
+// lookup never box a key or call compareTo. Supports the same balancing
+// modes as BinarySearchTree. The tree logic is shared with IntBinarySearchTree
+// in PrimitiveBinarySearchTree.
+//
+// ******************************ADDITIONAL METHODS****************************
+// int nodeCount()  Returns the count of nodes in constant time.
+// boolean isFull()  Returns true if the tree is full binary tree.
+// printLevels()  Performs a level-by-level printing of the tree.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class LongBinarySearchTree extends PrimitiveBinarySearchTree {
+    /**
+     * Construct the tree.
+     */
+    public LongBinarySearchTree() {
+        this(BinarySearchTree.Mode.UNBALANCED);
+    }
+
+    /**
+     * Construct the tree using the specified balancing strategy.
+     * 
+     * @param mode the balancing strategy.
+     * @throws IllegalArgumentException if mode is SPLAY, which this tree does not implement.
+     */
+    public LongBinarySearchTree(BinarySearchTree.Mode mode) {
+        super(mode);
+    }
+
+    /**
+     * Insert into the tree; duplicates are ignored.
+     * 
+     * @param x the item to insert.
+     */
+    public void insert(long x) {
+        insertKey(x);
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     * 
+     * @param x the item to remove.
+     */
+    public void remove(long x) {
+        removeKey(x);
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     * 
+     * @return smallest item.
+     */
+    public long findMin() {
+        return minKey();
+    }
+
+    /**
+     * Find the largest item in the tree.
+     * 
+     * @return the largest item.
+     */
+    public long findMax() {
+        return maxKey();
+    }
+
+    /**
+     * Find an item in the tree.
+     * 
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(long x) {
+        return containsKey(x);
+    }
+
+    @Override
+    Node newNode(long x) {
+        return new BinaryNode(x);
+    }
+
+    // Node holding its long key inline
+    private static final class BinaryNode extends Node {
+        BinaryNode(long theElement) {
+            element = theElement;
+        }
+
+        @Override
+        long key() {
+            return element;
+        }
+
+        @Override
+        void setKey(long x) {
+            element = x;
+        }
+
+        long element; // The data in the node
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+// ******************PUBLIC OPERATIONS*********************
+// static void write( t, f )  --> Save the items of tree t to file f
+// static open( f )           --> Map a saved file for reading
+// boolean contains( x )      --> Return true if x is present
+// int findMin( )             --> Return smallest item
+// int findMax( )             --> Return largest item
+// boolean isEmpty( )         --> Return true if empty; else false
+// int nodeCount( )           --> Return the count of items
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+// Throws IOException if the file cannot be read or is not a saved tree
+//
+// Read-only search tree over int keys served straight from a memory-mapped file.
+//  * The file is a small header followed by the keys in sorted order, which
+//    is the implicit layout of a perfectly balanced tree: the middle key is
+//    the root and each half is a subtree.
+//  * write() sorts the keys of a tree with a Comparator into ascending
+//    numeric order first, so the file holds the same items in any case.
+//  * open() only maps the file and checks the header, so reopening costs
+//    the same for any number of keys; pages are read in by the OS on demand.
+//  * A file holds at most Integer.MAX_VALUE bytes, about 536 million keys.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class MappedIntSearchTree {
+    /**
+     * Construct a tree over mapped keys.
+     */
+    private MappedIntSearchTree(IntBuffer keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Saves the items of a tree to a file, replacing any existing file.
+     * The keys are saved in ascending numeric order, whatever the ordering
+     * of the tree.
+     *
+     * @param t the tree to save.
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(BinarySearchTree<Integer> t, Path file) throws IOException {
+        int count = t.nodeCount();
+        if (count > MAX_KEYS)
+            throw new IOException("A tree of " + count + " items is too large for one file");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+            IntStream items = t.stream().mapToInt(Integer::intValue); // in-order, so sorted by the tree's ordering
+            if (t.comparator() != null)
+                items = items.sorted();
+            for (PrimitiveIterator.OfInt keys = items.iterator(); keys.hasNext();) {
+                if (!buf.hasRemaining())
+                    drain(buf, out);
+                buf.putInt(keys.nextInt());
+            }
+            drain(buf, out);
+            out.force(true);
+        }
+    }
+
+    /**
+     * Internal method to write out and clear a filled buffer.
+     */
+    private static void drain(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * Maps a file saved by write for reading. Only the header is read.
+     *
+     * @param file the file to open.
+     * @return a tree serving the saved items.
+     * @throws IOException if the file cannot be read or is not a saved tree.
+     */
+    public static MappedIntSearchTree open(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE)
+                throw new IOException(file + " is not a saved tree");
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+                throw new IOException(file + " is not a saved tree");
+            int count = map.getInt(8);
+            if (count < 0 || HEADER_BYTES + 4L * count != length)
+                throw new IOException(file + " is truncated");
+            map.position(HEADER_BYTES);
+            return new MappedIntSearchTree(map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+        }
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(int x) {
+        int lo = 0;
+        int hi = keys.limit() - 1;
+        while (lo <= hi) { // descend from the middle key, the root of each subtree
+            int mid = (lo + hi) >>> 1;
+            int key = keys.get(mid);
+            if (x < key)
+                hi = mid - 1;
+            else if (x > key)
+                lo = mid + 1;
+            else
+                return true; // Match
+        }
+        return false;
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public int findMin() {
+        if (isEmpty())
+            throw new UnderflowException();
+        return keys.get(0);
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public int findMax() {
+        if (isEmpty())
+            throw new UnderflowException();
+        return keys.get(keys.limit() - 1);
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return keys.limit() == 0;
+    }
+
+    /**
+     * Count the number of items.
+     */
+    public int nodeCount() {
+        return keys.limit();
+    }
+
+    private static final int MAGIC = 0x42535431; // "BST1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16; // magic, version, count, reserved
+    private static final int MAX_KEYS = (Integer.MAX_VALUE - HEADER_BYTES) / 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The sorted keys, a view of the mapped file past its header. */
+    private final IntBuffer keys;
+
+    // Test program
+    public static void main(String[] args) throws IOException {
+        BinarySearchTree<Integer> natural = new BinarySearchTree<>();
+        BinarySearchTree<Integer> reversed = new BinarySearchTree<>(BinarySearchTree.Mode.AVL,
+                Comparator.reverseOrder());
+        for (int i = 0; i < 100; i++) {
+            natural.insert(i);
+            reversed.insert(i);
+        }
+        Path file = Files.createTempFile("tree", ".bst");
+        try {
+            for (BinarySearchTree<Integer> t : Arrays.asList(natural, reversed)) {
+                write(t, file);
+                MappedIntSearchTree m = open(file);
+                int found = 0;
+                for (int i = -1; i <= 100; i++)
+                    if (m.contains(i))
+                        found++;
+                System.out.println((t.comparator() == null ? "Natural" : "Reversed") + " tree: found " + found
+                        + " of 100 keys, min " + m.findMin() + ", max " + m.findMax());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
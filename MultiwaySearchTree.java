@@ -0,0 +1,476 @@
+import java.util.*;
+
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// B-tree with the same operations as BinarySearchTree, for very large trees.
+//  * Each node keeps up to maxKeys items sorted in an array, and an internal
+//    node one more child than items. A search binary-searches the items of
+//    a node and follows one child, so it visits about log(n) / log(maxKeys / 2)
+//    nodes instead of log2(n).
+//  * Every node but the root stays at least half full: insert splits an
+//    overflowing node around its middle item, and remove borrows from or
+//    merges with a sibling, so all leaves are at the same depth.
+//  * Per item the tree holds an array slot and a share of a child link,
+//    rather than a node object with two links and cached height and size.
+//
+// ******************************ADDITIONAL METHODS****************************
+// int nodeCount()  Returns the count of items in constant time.
+// int height()  Returns the number of levels below the root, -1 if empty.
+// printLevels()  Performs a level-by-level printing of the tree, each node in brackets.
+// MultiwaySearchTree(maxKeys)  Constructs a tree whose nodes hold up to maxKeys items.
+// ******************ERRORS****************************************************
+// Throws IllegalArgumentException from the constructor when maxKeys is less than 3
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+public class MultiwaySearchTree<AnyType extends Comparable<? super AnyType>> {
+    /**
+     * Construct the tree.
+     */
+    public MultiwaySearchTree() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * Construct the tree with the specified node width.
+     *
+     * @param maxKeys the most items a node holds.
+     * @throws IllegalArgumentException if maxKeys is less than 3.
+     */
+    public MultiwaySearchTree(int maxKeys) {
+        if (maxKeys < 3)
+            throw new IllegalArgumentException("A node must hold at least 3 items but maxKeys was " + maxKeys);
+        this.maxKeys = maxKeys;
+        minKeys = maxKeys / 2;
+        path = new Node[INITIAL_PATH_LENGTH];
+        pathIndex = new int[INITIAL_PATH_LENGTH];
+    }
+
+    /**
+     * Count the number of items.
+     */
+    public int nodeCount() {
+        return size;
+    }
+
+    /**
+     * Returns the number of levels below the root, or -1 if the tree is empty.
+     */
+    public int height() {
+        int h = -1;
+        for (Node t = root; t != null; t = (t.children == null) ? null : t.children[0])
+            h++;
+        return h;
+    }
+
+    /**
+     * Printout the tree level-by-level, one line per level with the items
+     * of each node in brackets.
+     */
+    public void printLevels() {
+        if (isEmpty())
+            throw new UnderflowException();
+        StringBuilder line = new StringBuilder();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            for (int n = queue.size(); n > 0; n--) { // one level per pass
+                Node t = queue.poll();
+                line.append('[');
+                for (int i = 0; i < t.count; i++)
+                    line.append(i == 0 ? "" : " ").append(t.keys[i]);
+                line.append("] ");
+                if (t.children != null)
+                    for (int i = 0; i <= t.count; i++)
+                        queue.add(t.children[i]);
+            }
+            System.out.println(line);
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * Insert into the tree; duplicates are ignored.
+     *
+     * @param x the item to insert.
+     */
+    public void insert(AnyType x) {
+        if (root == null) {
+            root = new Node(maxKeys, true);
+            root.keys[0] = x;
+            root.count = 1;
+            size = 1;
+            return;
+        }
+        int depth = 0;
+        Node t = root;
+        while (true) {
+            int i = search(t, x);
+            if (i >= 0) {
+                Arrays.fill(path, 0, depth, null);
+                return; // Duplicate; do nothing
+            }
+            i = -i - 1;
+            if (t.children == null) {
+                insertAt(t, i, x, null);
+                break;
+            }
+            push(depth++, t, i);
+            t = t.children[i];
+        }
+        size++;
+        while (t.count > maxKeys) { // split overflowing nodes on the way back up
+            Object middle = t.keys[t.count / 2];
+            Node right = split(t);
+            if (depth == 0) { // the root splits; the tree grows a level
+                root = new Node(maxKeys, false);
+                root.keys[0] = middle;
+                root.children[0] = t;
+                root.children[1] = right;
+                root.count = 1;
+                break;
+            }
+            Node p = path[--depth];
+            path[depth] = null;
+            insertAt(p, pathIndex[depth], middle, right);
+            t = p;
+        }
+        Arrays.fill(path, 0, depth, null);
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     *
+     * @param x the item to remove.
+     */
+    public void remove(AnyType x) {
+        int depth = 0;
+        int i;
+        Node t = root;
+        while (true) {
+            if (t == null) {
+                Arrays.fill(path, 0, depth, null);
+                return; // Item not found; do nothing
+            }
+            i = search(t, x);
+            if (i >= 0)
+                break;
+            i = -i - 1;
+            push(depth++, t, i);
+            t = (t.children == null) ? null : t.children[i];
+        }
+
+        if (t.children != null) { // Internal node: take the predecessor from a leaf
+            push(depth++, t, i);
+            Node leaf = t.children[i];
+            while (leaf.children != null) {
+                push(depth++, leaf, leaf.count);
+                leaf = leaf.children[leaf.count];
+            }
+            t.keys[i] = leaf.keys[leaf.count - 1];
+            t = leaf;
+            i = leaf.count - 1;
+        }
+        removeAt(t, i);
+        size--;
+        while (depth > 0 && t.count < minKeys) { // refill underflowing nodes on the way back up
+            Node p = path[--depth];
+            path[depth] = null;
+            int c = pathIndex[depth];
+            if (c > 0 && p.children[c - 1].count > minKeys)
+                borrowFromLeft(p, c);
+            else if (c < p.count && p.children[c + 1].count > minKeys)
+                borrowFromRight(p, c);
+            else
+                merge(p, (c > 0) ? c - 1 : c);
+            t = p;
+        }
+        Arrays.fill(path, 0, depth, null);
+        if (root.count == 0) // the root lost its last item; the tree shrinks a level
+            root = (root.children == null) ? null : root.children[0];
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     *
+     * @return smallest item.
+     */
+    public AnyType findMin() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Node t = root;
+        while (t.children != null)
+            t = t.children[0];
+        return keyAt(t, 0);
+    }
+
+    /**
+     * Find the largest item in the tree.
+     *
+     * @return the largest item.
+     */
+    public AnyType findMax() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Node t = root;
+        while (t.children != null)
+            t = t.children[t.count];
+        return keyAt(t, t.count - 1);
+    }
+
+    /**
+     * Find an item in the tree.
+     *
+     * @param x the item to search for.
+     * @return true if found.
+     */
+    public boolean contains(AnyType x) {
+        Node t = root;
+        while (t != null) {
+            int i = search(t, x);
+            if (i >= 0)
+                return true; // Match
+            t = (t.children == null) ? null : t.children[-i - 1];
+        }
+        return false;
+    }
+
+    /**
+     * Make the tree logically empty.
+     */
+    public void makeEmpty() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        if (isEmpty()) {
+            System.out.println("Empty tree");
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        printTree(root, out);
+        System.out.print(out);
+    }
+
+    /**
+     * Internal method to append the items of a subtree in sorted order.
+     * Recursion depth is the height of the tree, which is logarithmic.
+     */
+    private void printTree(Node t, StringBuilder out) {
+        for (int i = 0; i < t.count; i++) {
+            if (t.children != null)
+                printTree(t.children[i], out);
+            out.append(t.keys[i]).append(' ');
+        }
+        if (t.children != null)
+            printTree(t.children[t.count], out);
+    }
+
+    /**
+     * Internal method to binary-search the items of a node.
+     *
+     * @param t the node.
+     * @param x the item to search for.
+     * @return the index of x if present, else -(insertion point) - 1,
+     *         where the insertion point is also the child to descend into.
+     */
+    private int search(Node t, AnyType x) {
+        int lo = 0;
+        int hi = t.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int compareResult = x.compareTo(keyAt(t, mid));
+
+            if (compareResult < 0)
+                hi = mid - 1;
+            else if (compareResult > 0)
+                lo = mid + 1;
+            else
+                return mid; // Match
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Internal method to insert an item into a node, with the subtree of
+     * larger items that goes to its right in an internal node.
+     *
+     * @param t the node, which may overflow by one item.
+     * @param i the position of the new item.
+     * @param x the new item.
+     * @param right the new child right of x, or null in a leaf.
+     */
+    private void insertAt(Node t, int i, Object x, Node right) {
+        System.arraycopy(t.keys, i, t.keys, i + 1, t.count - i);
+        t.keys[i] = x;
+        if (right != null) {
+            System.arraycopy(t.children, i + 1, t.children, i + 2, t.count - i);
+            t.children[i + 1] = right;
+        }
+        t.count++;
+    }
+
+    /**
+     * Internal method to remove an item from a node, and in an internal
+     * node the child to its right.
+     */
+    private void removeAt(Node t, int i) {
+        System.arraycopy(t.keys, i + 1, t.keys, i, t.count - i - 1);
+        t.keys[t.count - 1] = null;
+        if (t.children != null) {
+            System.arraycopy(t.children, i + 2, t.children, i + 1, t.count - i - 1);
+            t.children[t.count] = null;
+        }
+        t.count--;
+    }
+
+    /**
+     * Internal method to split an overflowing node. The items above the
+     * middle one move to a new node; the middle item is dropped from t and
+     * must be read by the caller first, to go up into the parent.
+     *
+     * @param t the node, holding maxKeys + 1 items.
+     * @return the new node holding the larger items.
+     */
+    private Node split(Node t) {
+        int mid = t.count / 2;
+        Node right = new Node(maxKeys, t.children == null);
+        right.count = t.count - mid - 1;
+        System.arraycopy(t.keys, mid + 1, right.keys, 0, right.count);
+        Arrays.fill(t.keys, mid, t.count, null);
+        if (t.children != null) {
+            System.arraycopy(t.children, mid + 1, right.children, 0, right.count + 1);
+            Arrays.fill(t.children, mid + 1, t.count + 1, null);
+        }
+        t.count = mid;
+        return right;
+    }
+
+    /**
+     * Internal method to refill child c of p with the largest item of its
+     * left sibling, rotating it through the separating item in p.
+     */
+    private void borrowFromLeft(Node p, int c) {
+        Node child = p.children[c];
+        Node left = p.children[c - 1];
+        insertAt(child, 0, p.keys[c - 1], null);
+        p.keys[c - 1] = left.keys[left.count - 1];
+        if (child.children != null) {
+            System.arraycopy(child.children, 0, child.children, 1, child.count);
+            child.children[0] = left.children[left.count];
+            left.children[left.count] = null;
+        }
+        left.keys[--left.count] = null;
+    }
+
+    /**
+     * Internal method to refill child c of p with the smallest item of its
+     * right sibling, rotating it through the separating item in p.
+     */
+    private void borrowFromRight(Node p, int c) {
+        Node child = p.children[c];
+        Node right = p.children[c + 1];
+        child.keys[child.count] = p.keys[c];
+        p.keys[c] = right.keys[0];
+        if (child.children != null) {
+            child.children[child.count + 1] = right.children[0];
+            System.arraycopy(right.children, 1, right.children, 0, right.count);
+            right.children[right.count] = null;
+        }
+        child.count++;
+        System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+        right.keys[--right.count] = null;
+    }
+
+    /**
+     * Internal method to merge children k and k + 1 of p, with the item
+     * separating them, into child k. Both children together hold fewer
+     * than maxKeys items, as one is below half full and the other at it.
+     */
+    private void merge(Node p, int k) {
+        Node left = p.children[k];
+        Node right = p.children[k + 1];
+        left.keys[left.count] = p.keys[k];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+        if (left.children != null)
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+        left.count += right.count + 1;
+        removeAt(p, k);
+    }
+
+    /**
+     * Internal method to record a node and the child taken from it on the
+     * search path, growing the path buffers if the tree is deeper than them.
+     */
+    private void push(int depth, Node t, int i) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+            pathIndex = Arrays.copyOf(pathIndex, depth * 2);
+        }
+        path[depth] = t;
+        pathIndex[depth] = i;
+    }
+
+    /**
+     * Return item i of node t.
+     */
+    @SuppressWarnings("unchecked")
+    private AnyType keyAt(Node t, int i) {
+        return (AnyType) t.keys[i];
+    }
+
+    // Node of up to maxKeys sorted items, with one more child than items unless it is a leaf
+    private static class Node {
+        Node(int maxKeys, boolean leaf) {
+            keys = new Object[maxKeys + 1]; // one spare slot for an insert that splits
+            children = leaf ? null : new Node[maxKeys + 2];
+        }
+
+        final Object[] keys; // The items, sorted, in keys[0..count)
+        final Node[] children; // children[i] holds the items below keys[i]; null in a leaf
+        int count; // Number of items in the node
+    }
+
+    private static final int DEFAULT_MAX_KEYS = 64;
+    private static final int INITIAL_PATH_LENGTH = 16;
+
+    /** The root node, or null if empty. */
+    private Node root;
+
+    /** Number of items in the tree. */
+    private int size;
+
+    /** The most items a node holds. */
+    private final int maxKeys;
+
+    /** The fewest items a node other than the root holds. */
+    private final int minKeys;
+
+    /** Reusable buffers holding the nodes and child indexes on the search path of an insert or remove. */
+    private Node[] path;
+    private int[] pathIndex;
+}
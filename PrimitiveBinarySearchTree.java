@@ -0,0 +1,395 @@
+import java.util.*;
+
+// ******************PUBLIC OPERATIONS*********************
+// boolean isEmpty( )     --> Return true if empty; else false
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// Throws UnderflowException as appropriate
+//
+// Shared implementation of IntBinarySearchTree and LongBinarySearchTree.
+//  * Keys are passed around as longs, which hold every int exactly and
+//    order ints the same way, so one copy of insert, remove and contains
+//    serves both trees; each subclass's nodes store the key at its own width.
+//  * Subclasses supply the node type and the public methods taking and
+//    returning keys of their own type.
+//
+// ******************************ADDITIONAL METHODS****************************
+// int nodeCount()  Returns the count of nodes in constant time.
+// boolean isFull()  Returns true if the tree is full binary tree.
+// printLevels()  Performs a level-by-level printing of the tree.
+//
+// 20FA CS3345 Data Structure & Introduction Alogrithmic Analysis.
+// Project #2
+// @author Gavin John Dunnett
+abstract class PrimitiveBinarySearchTree {
+    /**
+     * Construct the tree using the specified balancing strategy.
+     *
+     * @param mode the balancing strategy.
+     * @throws IllegalArgumentException if mode is SPLAY, which these trees do not implement.
+     */
+    PrimitiveBinarySearchTree(BinarySearchTree.Mode mode) {
+        if (mode == BinarySearchTree.Mode.SPLAY)
+            throw new IllegalArgumentException("Splay mode is not supported");
+        this.mode = mode;
+        root = null;
+    }
+
+    /**
+     * Count the number of nodes.
+     */
+    public int nodeCount() {
+        return size(root);
+    }
+
+    /**
+     * Returns true if the tree is full.
+     */
+    public boolean isFull() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node r = stack.pop();
+            if ((r.left == null) != (r.right == null))
+                return false; // not full, end search
+            if (r.left != null) { // both children present, keep checking
+                stack.push(r.right);
+                stack.push(r.left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Printout the tree level-by-level.
+     */
+    public void printLevels() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Deque<Node> qu = new ArrayDeque<>();
+        StringBuilder line = new StringBuilder();
+        qu.add(root);
+        while (!qu.isEmpty()) {
+            for (int n = qu.size(); n > 0; n--) { // one level per pass
+                Node x = qu.remove();
+                line.append(x.key()).append(' ');
+                if (x.left != null)
+                    qu.add(x.left);
+                if (x.right != null)
+                    qu.add(x.right);
+            }
+            System.out.println(line);
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * Make the tree logically empty.
+     */
+    public void makeEmpty() {
+        root = null;
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree() {
+        if (isEmpty()) {
+            System.out.println("Empty tree");
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        Deque<Node> stack = new ArrayDeque<>();
+        Node t = root;
+        while (t != null || !stack.isEmpty()) {
+            while (t != null) {
+                stack.push(t);
+                t = t.left;
+            }
+            t = stack.pop();
+            out.append(t.key()).append(' ');
+            t = t.right;
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * Internal method to insert a key; duplicates are ignored.
+     *
+     * @param x the key to insert.
+     */
+    void insertKey(long x) {
+        if (root == null) {
+            root = newNode(x);
+            return;
+        }
+        int depth = 0;
+        Node r = root;
+        while (true) {
+            long key = r.key();
+            if (x == key) {
+                clearPath(depth);
+                return; // Duplicate; do nothing
+            }
+            push(depth++, r);
+            Node next = (x < key) ? r.left : r.right;
+            if (next == null)
+                break;
+            r = next;
+        }
+        if (x < r.key())
+            r.left = newNode(x);
+        else
+            r.right = newNode(x);
+        root = retrace(depth);
+    }
+
+    /**
+     * Internal method to remove a key. Nothing is done if x is not found.
+     *
+     * @param x the key to remove.
+     */
+    void removeKey(long x) {
+        int depth = 0;
+        Node r = root;
+        while (r != null && x != r.key()) {
+            push(depth++, r);
+            r = (x < r.key()) ? r.left : r.right;
+        }
+        if (r == null) {
+            clearPath(depth);
+            return; // Item not found; do nothing
+        }
+
+        Node parent;
+        if (r.left != null && r.right != null) { // Two children
+            push(depth++, r);
+            Node min = r.right;
+            while (min.left != null) {
+                push(depth++, min);
+                min = min.left;
+            }
+            r.setKey(min.key());
+            parent = path[depth - 1];
+            if (parent == r)
+                parent.right = min.right;
+            else
+                parent.left = min.right;
+        } else {
+            Node child = (r.left != null) ? r.left : r.right;
+            if (depth == 0) {
+                root = child;
+                return;
+            }
+            parent = path[depth - 1];
+            if (parent.left == r)
+                parent.left = child;
+            else
+                parent.right = child;
+        }
+        root = retrace(depth);
+    }
+
+    /**
+     * Internal method to find a key in the tree.
+     *
+     * @param x the key to search for.
+     * @return true if found.
+     */
+    boolean containsKey(long x) {
+        Node t = root;
+        while (t != null) {
+            long key = t.key();
+            if (x < key)
+                t = t.left;
+            else if (x > key)
+                t = t.right;
+            else
+                return true; // Match
+        }
+        return false;
+    }
+
+    /**
+     * Internal method to find the smallest key.
+     *
+     * @return the smallest key.
+     */
+    long minKey() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Node t = root;
+        while (t.left != null)
+            t = t.left;
+        return t.key();
+    }
+
+    /**
+     * Internal method to find the largest key.
+     *
+     * @return the largest key.
+     */
+    long maxKey() {
+        if (isEmpty())
+            throw new UnderflowException();
+        Node t = root;
+        while (t.right != null)
+            t = t.right;
+        return t.key();
+    }
+
+    /**
+     * Internal method to create a node holding a key, which is known to fit
+     * the subclass's key type.
+     */
+    abstract Node newNode(long x);
+
+    /**
+     * Internal method to record a node on the search path.
+     */
+    private void push(int depth, Node t) {
+        if (path == null)
+            path = new Node[INITIAL_PATH_LENGTH];
+        else if (depth == path.length)
+            path = Arrays.copyOf(path, depth * 2);
+        path[depth] = t;
+    }
+
+    /**
+     * Internal method to drop the first depth nodes of the search path, so
+     * that the buffer holds no stale nodes once an operation ends early.
+     */
+    private void clearPath(int depth) {
+        if (depth > 0)
+            Arrays.fill(path, 0, depth, null);
+    }
+
+    /**
+     * Internal method to walk back up a recorded search path after its
+     * deepest node changed, refreshing heights and rebalancing each ancestor.
+     * @param depth The number of nodes on the path.
+     * @return the new root of the tree.
+     */
+    private Node retrace(int depth) {
+        Node child = path[--depth];
+        path[depth] = null;
+        Node t = balance(child);
+        while (depth > 0) {
+            Node p = path[--depth];
+            path[depth] = null;
+            if (p.left == child)
+                p.left = t;
+            else
+                p.right = t;
+            child = p;
+            t = balance(p);
+        }
+        return t;
+    }
+
+    /**
+     * Internal method to restore the cached height and size of a subtree root
+     * and, in AVL mode, to rebalance it.
+     */
+    private Node balance(Node t) {
+        if (mode == BinarySearchTree.Mode.AVL) {
+            if (height(t.left) - height(t.right) > ALLOWED_IMBALANCE) {
+                if (height(t.left.left) < height(t.left.right))
+                    t.left = rotateWithRightChild(t.left);
+                t = rotateWithLeftChild(t);
+            } else if (height(t.right) - height(t.left) > ALLOWED_IMBALANCE) {
+                if (height(t.right.right) < height(t.right.left))
+                    t.right = rotateWithLeftChild(t.right);
+                t = rotateWithRightChild(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    /**
+     * Rotate binary tree node with left child.
+     */
+    private Node rotateWithLeftChild(Node k2) {
+        Node k1 = k2.left;
+        k2.left = k1.right;
+        k1.right = k2;
+        update(k2);
+        update(k1);
+        return k1;
+    }
+
+    /**
+     * Rotate binary tree node with right child.
+     */
+    private Node rotateWithRightChild(Node k1) {
+        Node k2 = k1.right;
+        k1.right = k2.left;
+        k2.left = k1;
+        update(k1);
+        update(k2);
+        return k2;
+    }
+
+    /**
+     * Internal method to recompute the cached height and size of a node from its children.
+     */
+    private static void update(Node t) {
+        t.height = Math.max(height(t.left), height(t.right)) + 1;
+        t.size = size(t.left) + size(t.right) + 1;
+    }
+
+    /**
+     * Return the height of node t, or -1, if null.
+     */
+    private static int height(Node t) {
+        return t == null ? -1 : t.height;
+    }
+
+    /**
+     * Return the number of nodes in the subtree rooted at t, or 0, if null.
+     */
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    // Node links and cached shape; subclasses add the key at their own width
+    abstract static class Node {
+        Node() {
+            size = 1;
+        }
+
+        abstract long key(); // The key, widened to long
+
+        abstract void setKey(long x); // Replaces the key with one known to fit
+
+        Node left; // Left child
+        Node right; // Right child
+        int height; // Height of the subtree rooted here
+        int size; // Number of nodes in the subtree rooted here
+    }
+
+    private static final int ALLOWED_IMBALANCE = 1;
+    private static final int INITIAL_PATH_LENGTH = 64;
+
+    /** The tree root. */
+    private Node root;
+
+    /** The balancing strategy chosen at construction. */
+    private final BinarySearchTree.Mode mode;
+
+    /** Reusable buffer holding the search path of the current insert or remove. */
+    private Node[] path;
+}